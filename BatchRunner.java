@@ -0,0 +1,358 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Headless entry point: runs one simulation from the command line and writes the result as
+// JSON, CSV or plain text. Touches no Swing or AWT class, so it runs on servers without a
+// display, e.g.
+//
+//   java BatchRunner --deck "my deck.ydk" --config my.cfg --trials 1000000 --seed 42 --second --format csv
+//
+// Exit status is 0 on success, 1 if the run failed and 2 for bad arguments.
+public class BatchRunner {
+    static final String USAGE = String.join("\n",
+            "Usage: java BatchRunner --deck <file.ydk> [options]",
+            "  --deck <file>           deck list (.ydk), required",
+            "  --config <file>         roles, weights and patterns in the simulator config format",
+            "  --cards <file>          card database (default src/cards.csv)",
+            "  --trials <n>            trials to run, or the cap with a stopping target (default 100000)",
+            "  --seed <n>              random seed (default random)",
+            "  --first | --second      turn order (default first)",
+            "  --both                  both turns from the same six-card draws, with the coin-flip average",
+            "  --threads <n>           worker threads (default all cores)",
+            "  --sampling <mode>       plain, stratified or antithetic (default plain)",
+            "  --target-score <x>      stop once the average score is within +/- x",
+            "  --target-pattern <pct>  stop once every pattern rate is within +/- pct percent",
+            "  --confidence <c>        confidence of the targets (default 0.95)",
+            "  --time <seconds>        stop after this long instead",
+            "  --turns <n>             also draw turns 2..n from the same deck, resolving the config's searches",
+            "  --combos <file>         also play out each hand with these card effects and report the best end board",
+            "  --top <k>               also list the k highest and k lowest scoring distinct hands",
+            "  --brick <x>             also report the rate of hands scoring below x",
+            "  --impact                also report each card's pattern rates and average score with and without it",
+            "  --exact                 enumerate every distinct hand instead of sampling",
+            "  --sensitivity           also simulate every one-copy change of the deck and report the deltas",
+            "  --optimize              search deck ratios from the deck, then report the best list",
+            "  --objective <obj>       avg, pattern:<n> (n-th config pattern) or percentile:<q> (default avg)",
+            "  --pool <file>           cards the search may use, one \"name=min-max\" per line",
+            "                          (default: the deck's cards at 0-3 copies)",
+            "  --size <min-max>        deck size range for the search (default: the deck's size)",
+            "  --steps <n>             annealing steps (default 500)",
+            "  --neighbours <n>        candidates simulated in parallel per step (default 4)",
+            "  --store <dir>           replay the hands saved there for this deck, turn, sampling and --seed,",
+            "                          or save this run's hands there for later runs",
+            "  --format <fmt>          json, csv or text (default json)",
+            "  --no-header             leave out the CSV header row",
+            "  --out <file>            write here instead of stdout; CSV rows are appended");
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        try {
+            System.exit(run(args, System.out));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    static int run(String[] args, PrintStream stdout) throws IOException {
+        Map<String, String> options = parseArgs(args);
+        if (options.containsKey("help")) {
+            stdout.println(USAGE);
+            return 0;
+        }
+        String deckPath = options.get("deck");
+        if (deckPath == null)
+            throw new IllegalArgumentException("--deck is required");
+        boolean bothTurns = options.containsKey("both");
+        boolean goingSecond = options.containsKey("second") || bothTurns;
+        String format = options.getOrDefault("format", "json");
+        if (!List.of("json", "csv", "text").contains(format))
+            throw new IllegalArgumentException("Unknown format: " + format);
+
+        RunSettings settings = new RunSettings()
+                .trials(longOption(options, "trials", 100000))
+                .sampling(sampling(options.getOrDefault("sampling", "plain")))
+                .stopWhen(stoppingRule(options));
+        if (options.containsKey("seed"))
+            settings.seed(longOption(options, "seed", 0));
+        if (options.containsKey("threads"))
+            settings.threads((int) longOption(options, "threads", 0));
+        if (settings.trials <= 0 || settings.threads <= 0)
+            throw new IllegalArgumentException("--trials and --threads must be positive");
+        double brickBelow = doubleOption(options, "brick", Double.NaN);
+
+        YDKImporter importer = new YDKImporter(options.getOrDefault("cards", "src/cards.csv"));
+        List<String> deck = importer.getCardNamesFromYDK(deckPath);
+        if (deck.isEmpty())
+            throw new IOException("No cards in " + deckPath);
+        SimulatorConfig config = new SimulatorConfig();
+        if (options.containsKey("config"))
+            config = SimulatorConfig.parse(Files.readString(Paths.get(options.get("config"))));
+        CompiledDeck compiled = CompiledDeck.compile(deck, config.cardInfos, config.weightsFirst, config.weightsSecond,
+                config.combos);
+
+        Map<String, String> run = new LinkedHashMap<>();
+        run.put("deck", deckPath);
+        run.put("config", options.getOrDefault("config", ""));
+        run.put("turn", bothTurns ? "both" : goingSecond ? "second" : "first");
+
+        String summary = "";
+        if (options.containsKey("store") && !options.containsKey("seed"))
+            throw new IllegalArgumentException("--store needs a --seed to file the hands under");
+        if (options.containsKey("store") && (options.containsKey("exact") || options.containsKey("sensitivity")
+                || options.containsKey("optimize")))
+            throw new IllegalArgumentException("--store only applies to a plain sampled run");
+        int turns = (int) longOption(options, "turns", 1);
+        if (options.containsKey("turns") && (bothTurns || options.containsKey("exact") || options.containsKey("store")
+                || options.containsKey("sensitivity") || options.containsKey("optimize")))
+            throw new IllegalArgumentException("--turns only applies to a plain sampled run of one turn order");
+        if (bothTurns && (options.containsKey("exact") || options.containsKey("sensitivity")
+                || options.containsKey("optimize")))
+            throw new IllegalArgumentException("--both only applies to a plain sampled run");
+        if (bothTurns && settings.sampling == HandSampler.Sampling.STRATIFIED)
+            throw new IllegalArgumentException("--both cannot use stratified sampling, which puts the starters first");
+        if (bothTurns)
+            settings.collect(new BothTurns(compiled, config.handPatterns));
+        if (options.containsKey("top")) {
+            if (options.containsKey("exact") || options.containsKey("turns") || options.containsKey("sensitivity")
+                    || options.containsKey("optimize"))
+                throw new IllegalArgumentException("--top only applies to a sampled run of opening hands");
+            settings.collect(new TopHands(compiled, (int) longOption(options, "top", 10)));
+        }
+        if (options.containsKey("impact")) {
+            if (options.containsKey("exact") || options.containsKey("turns") || options.containsKey("sensitivity")
+                    || options.containsKey("optimize"))
+                throw new IllegalArgumentException("--impact only applies to a sampled run of opening hands");
+            settings.collect(new CardImpact(compiled, config.handPatterns));
+        }
+        if (options.containsKey("combos")) {
+            if (options.containsKey("exact") || options.containsKey("turns") || options.containsKey("sensitivity")
+                    || options.containsKey("optimize"))
+                throw new IllegalArgumentException("--combos only applies to a sampled run of opening hands");
+            ComboSolver.Rules rules = ComboSolver.Rules.parse(Files.readString(Paths.get(options.get("combos"))));
+            settings.collect(new ComboSolver(compiled, importer.getExtraDeckFromYDK(deckPath), rules,
+                    goingSecond ? 6 : 5));
+        }
+        if (options.containsKey("optimize")) {
+            if (options.containsKey("exact"))
+                throw new IllegalArgumentException("--optimize samples every candidate; drop --exact");
+            DeckOptimizer.Result best = optimize(options, deck, config, goingSecond, settings);
+            deck = best.deck;
+            compiled = CompiledDeck.compile(deck, config.cardInfos, config.weightsFirst, config.weightsSecond,
+                    config.combos);
+            run.put("objective", options.getOrDefault("objective", "avg"));
+            run.put("startValue", String.valueOf(best.startValue));
+            run.put("bestValue", String.valueOf(best.value));
+            run.put("candidates", String.valueOf(best.evaluated));
+            run.put("deckList", String.join("; ", best.countLines()));
+            summary = String.format("Optimized %s over %d steps, %d candidates: %s -> %s%n%s%n%n",
+                    run.get("objective"), best.steps, best.evaluated, best.startValue, best.value,
+                    String.join("\n", best.countLines()));
+        }
+
+        SimulationResult result;
+        if (options.containsKey("sensitivity")) {
+            if (options.containsKey("exact") || settings.rule != null)
+                throw new IllegalArgumentException("--sensitivity runs a fixed number of sampled trials");
+            result = CardSensitivity.start(deck, config.cardInfos, config.weightsFirst, config.weightsSecond,
+                    config.combos, config.handPatterns, goingSecond, settings).await();
+        } else if (options.containsKey("exact")) {
+            result = ExactEvaluator.evaluate(compiled, goingSecond, config.handPatterns);
+        } else if (options.containsKey("turns")) {
+            result = MultiTurn.run(compiled, goingSecond, config.handPatterns, config.searches, turns, settings);
+        } else if (options.containsKey("store")) {
+            result = runWithStore(Paths.get(options.get("store")), options, compiled, goingSecond,
+                    config.handPatterns, settings);
+        } else {
+            result = SimulationEngine.run(compiled, goingSecond, config.handPatterns, settings);
+        }
+
+        result.brickBelow = brickBelow;
+
+        String out = options.get("out");
+        String text;
+        switch (format) {
+            case "csv":
+                boolean header = !options.containsKey("no-header")
+                        && (out == null || !Files.exists(Paths.get(out)) || Files.size(Paths.get(out)) == 0);
+                text = CsvReport.of(result, run, header);
+                break;
+            case "text":
+                text = summary + PlainTextReport.of(result);
+                break;
+            default:
+                text = JsonReport.of(result, run);
+        }
+
+        if (out == null) {
+            stdout.print(text);
+            stdout.flush();
+        } else if (format.equals("csv")) {
+            Files.writeString(Paths.get(out), text, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } else {
+            Files.writeString(Paths.get(out), text, StandardCharsets.UTF_8);
+        }
+        return 0;
+    }
+
+    // --name value pairs, and bare --flags mapped to ""
+    static Map<String, String> parseArgs(String[] args) {
+        List<String> flags = List.of("first", "second", "both", "exact", "optimize", "sensitivity", "impact",
+                "no-header", "help");
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--"))
+                throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+            String name = args[i].substring(2);
+            if (flags.contains(name)) {
+                options.put(name, "");
+            } else {
+                if (i + 1 >= args.length)
+                    throw new IllegalArgumentException("Missing value for --" + name);
+                options.put(name, args[++i]);
+            }
+        }
+        if ((options.containsKey("first") ? 1 : 0) + (options.containsKey("second") ? 1 : 0)
+                + (options.containsKey("both") ? 1 : 0) > 1)
+            throw new IllegalArgumentException("Pick one of --first, --second and --both");
+        return options;
+    }
+
+    private static DeckOptimizer.Result optimize(Map<String, String> options, List<String> deck,
+                                                 SimulatorConfig config, boolean goingSecond,
+                                                 RunSettings settings) throws IOException {
+        if (settings.rule != null)
+            throw new IllegalArgumentException("--optimize runs a fixed number of trials per candidate");
+        Map<String, DeckOptimizer.PoolCard> pool = new LinkedHashMap<>();
+        for (String name : deck)
+            pool.putIfAbsent(name, new DeckOptimizer.PoolCard(name, 0, 3));
+        if (options.containsKey("pool")) {
+            for (String line : Files.readAllLines(Paths.get(options.get("pool")))) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+                int eq = line.lastIndexOf('=');
+                if (eq < 0)
+                    throw new IllegalArgumentException("Pool line needs name=min-max: " + line);
+                String name = line.substring(0, eq).trim();
+                int[] range = range(line.substring(eq + 1), "pool line " + line);
+                pool.put(name, new DeckOptimizer.PoolCard(name, range[0], range[1]));
+            }
+        }
+
+        String objectiveName = options.getOrDefault("objective", "avg");
+        DeckOptimizer.Objective objective;
+        if (objectiveName.equals("avg")) {
+            objective = DeckOptimizer.averageScore();
+        } else if (objectiveName.startsWith("pattern:")) {
+            int n = (int) longOption(Map.of("objective", objectiveName.substring(8)), "objective", 0);
+            if (n < 1 || n > config.handPatterns.size())
+                throw new IllegalArgumentException("No pattern " + n + " in the config");
+            objective = DeckOptimizer.patternRate(config.handPatterns.get(n - 1));
+        } else if (objectiveName.startsWith("percentile:")) {
+            objective = DeckOptimizer.percentile(
+                    doubleOption(Map.of("objective", objectiveName.substring(11)), "objective", 0));
+        } else {
+            throw new IllegalArgumentException("Unknown objective: " + objectiveName);
+        }
+
+        int[] size = options.containsKey("size") ? range(options.get("size"), "--size")
+                : new int[] { deck.size(), deck.size() };
+        DeckOptimizer optimizer = new DeckOptimizer(new ArrayList<>(pool.values()), config.cardInfos,
+                config.weightsFirst, config.weightsSecond, config.handPatterns, goingSecond, objective)
+                .combos(config.combos)
+                .deckSize(size[0], size[1])
+                .steps((int) longOption(options, "steps", 500))
+                .neighbours((int) longOption(options, "neighbours", 4))
+                .simulateWith(settings);
+        return optimizer.optimize(deck);
+    }
+
+    // Replays the saved hands for this deck, turn, sampling and seed if there are enough of them,
+    // otherwise runs as usual and saves the hands
+    private static SimulationResult runWithStore(Path dir, Map<String, String> options, CompiledDeck deck,
+                                                 boolean goingSecond, List<HandPattern> patterns,
+                                                 RunSettings settings) throws IOException {
+        int handSize = goingSecond ? 6 : 5;
+        Path path = HandStore.pathFor(dir, deck, handSize, settings.sampling, settings.seed);
+        if (Files.exists(path)) {
+            HandStore store = HandStore.open(path);
+            if (store.hands() >= settings.trials || !options.containsKey("trials"))
+                return SimulationEngine.run(deck, goingSecond, patterns, settings.replay(store));
+        }
+        if (settings.rule != null && settings.rule.timeLimitSeconds > 0)
+            throw new IllegalArgumentException("--store cannot save the hands of a --time run");
+        settings.record(HandStore.create(path, deck, handSize, settings.sampling, settings.seed, settings.trials));
+        return SimulationEngine.run(deck, goingSecond, patterns, settings);
+    }
+
+    // "min-max", or a single number for both
+    private static int[] range(String text, String what) {
+        String[] parts = text.trim().split("\\s*-\\s*");
+        try {
+            int min = Integer.parseInt(parts[0].trim());
+            int max = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : min;
+            return new int[] { min, max };
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad range in " + what + ": " + text);
+        }
+    }
+
+    private static long longOption(Map<String, String> options, String name, long defaultValue) {
+        String value = options.get(name);
+        if (value == null)
+            return defaultValue;
+        try {
+            return Long.parseLong(value.replace("_", "").replace(",", ""));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--" + name + " needs a whole number, got " + value);
+        }
+    }
+
+    private static double doubleOption(Map<String, String> options, String name, double defaultValue) {
+        String value = options.get(name);
+        if (value == null)
+            return defaultValue;
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--" + name + " needs a number, got " + value);
+        }
+    }
+
+    private static HandSampler.Sampling sampling(String name) {
+        for (HandSampler.Sampling sampling : HandSampler.Sampling.values()) {
+            if (sampling.name().equalsIgnoreCase(name))
+                return sampling;
+        }
+        throw new IllegalArgumentException("Unknown sampling: " + name);
+    }
+
+    // Null when neither a precision target nor a time budget is given
+    private static StoppingRule stoppingRule(Map<String, String> options) {
+        double score = doubleOption(options, "target-score", 0);
+        double pattern = doubleOption(options, "target-pattern", 0) / 100.0;
+        double seconds = doubleOption(options, "time", 0);
+        if (seconds > 0 && (score > 0 || pattern > 0))
+            throw new IllegalArgumentException("Use either a precision target or --time, not both");
+        if (seconds > 0)
+            return StoppingRule.timeBudget(seconds);
+        if (score > 0 || pattern > 0)
+            return StoppingRule.precision(score, pattern, doubleOption(options, "confidence", 0.95));
+        return null;
+    }
+}
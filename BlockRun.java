@@ -0,0 +1,184 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+// One simulation run in flight.
+//
+// Worker threads on a ForkJoinPool take blocks of trials in ascending order. Each block
+// draws from its own stream (see blockRandom) into a fresh accumulator, and finished blocks
+// are folded into a running total strictly in block order. Only the few blocks that finish
+// ahead of a slower neighbour are held on the side, so memory stays flat however long the
+// run is. The result is the same for any number of threads.
+//
+// snapshot() can be called from any thread while the run is going, and cancel() stops it
+// after the blocks already in progress.
+//
+// A run can also stop itself. The stop test is applied to the folded total every
+// CHECK_BLOCKS blocks, so it always sees the same prefix of blocks whatever the thread
+// count, and the result is exactly that prefix. A time limit simply stops handing out
+// blocks once it has passed.
+public class BlockRun<A> {
+    static final int BLOCK_SIZE = 1 << 14;
+    static final int CHECK_BLOCKS = 4;
+
+    // Body of one block: draw and accumulate `trials` hands using `random`
+    interface BlockTask<A> {
+        void run(A accumulator, SplittableRandom random, long block, int trials);
+    }
+
+    private final long trials;
+    private final long seed;
+    private final long blocks;
+    private final Supplier<A> newAccumulator;
+    private final BlockTask<A> task;
+    private final BiConsumer<A, A> merge;
+    private final Predicate<A> stopWhen;
+    private final long deadlineNanos;
+
+    private final ForkJoinPool pool;
+    private final List<ForkJoinTask<?>> workers = new ArrayList<>();
+    private final AtomicLong nextBlock = new AtomicLong();
+    private final AtomicLong completedTrials = new AtomicLong();
+    private final long startNanos = System.nanoTime();
+    private volatile boolean cancelled = false;
+    private volatile boolean targetReached = false;
+
+    // Guarded by this: every block before foldedBlocks is in folded, later ones wait in ahead
+    private final A folded;
+    private long foldedBlocks = 0;
+    private final TreeMap<Long, A> ahead = new TreeMap<>();
+
+    public BlockRun(long trials, long seed, int threads, Supplier<A> newAccumulator,
+                    BlockTask<A> task, BiConsumer<A, A> merge) {
+        this(trials, seed, threads, newAccumulator, task, merge, null, 0);
+    }
+
+    // stopWhen may be null; timeLimitSeconds <= 0 means no time limit
+    public BlockRun(long trials, long seed, int threads, Supplier<A> newAccumulator,
+                    BlockTask<A> task, BiConsumer<A, A> merge, Predicate<A> stopWhen, double timeLimitSeconds) {
+        this.trials = trials;
+        this.seed = seed;
+        this.blocks = (trials + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        this.newAccumulator = newAccumulator;
+        this.task = task;
+        this.merge = merge;
+        this.stopWhen = stopWhen;
+        this.deadlineNanos = timeLimitSeconds > 0 ? startNanos + (long) (timeLimitSeconds * 1e9) : Long.MAX_VALUE;
+        this.folded = newAccumulator.get();
+
+        int workerCount = (int) Math.max(1, Math.min(threads, blocks));
+        pool = new ForkJoinPool(workerCount);
+        for (int i = 0; i < workerCount; i++)
+            workers.add(pool.submit(this::work));
+        pool.shutdown(); // lets the threads exit once the workers return
+    }
+
+    // Independent stream for one block; depends only on the seed and the block index
+    static SplittableRandom blockRandom(long seed, long block) {
+        return new SplittableRandom(seed ^ (block * 0x9E3779B97F4A7C15L)).split();
+    }
+
+    private void work() {
+        try {
+            long b;
+            while (!cancelled && System.nanoTime() < deadlineNanos && (b = nextBlock.getAndIncrement()) < blocks) {
+                int blockTrials = (int) Math.min(BLOCK_SIZE, trials - b * BLOCK_SIZE);
+                A accumulator = newAccumulator.get();
+                task.run(accumulator, blockRandom(seed, b), b, blockTrials);
+                finished(b, accumulator, blockTrials);
+            }
+        } catch (RuntimeException | Error e) {
+            cancelled = true;
+            throw e;
+        }
+    }
+
+    private synchronized void finished(long block, A accumulator, int blockTrials) {
+        completedTrials.addAndGet(blockTrials);
+        if (targetReached)
+            return;
+        ahead.put(block, accumulator);
+        while (!ahead.isEmpty() && ahead.firstKey() == foldedBlocks) {
+            merge.accept(folded, ahead.pollFirstEntry().getValue());
+            foldedBlocks++;
+            if (stopWhen != null && foldedBlocks % CHECK_BLOCKS == 0 && stopWhen.test(folded)) {
+                targetReached = true;
+                cancelled = true;
+                ahead.clear(); // blocks past the checkpoint are not part of the result
+                break;
+            }
+        }
+    }
+
+    // Everything finished so far, merged in block order, as a new accumulator
+    public A snapshot() {
+        return snapshot(merge);
+    }
+
+    // The same, merged with `partial`, which may leave out parts too costly to copy while the
+    // workers wait on the lock
+    public synchronized A snapshot(BiConsumer<A, A> partial) {
+        A copy = newAccumulator.get();
+        partial.accept(copy, folded);
+        for (A pending : ahead.values())
+            partial.accept(copy, pending);
+        return copy;
+    }
+
+    // True if the run stopped because stopWhen was satisfied
+    public boolean isTargetReached() {
+        return targetReached;
+    }
+
+    public boolean isPastDeadline() {
+        return System.nanoTime() >= deadlineNanos;
+    }
+
+    public double timeLimitFraction() {
+        if (deadlineNanos == Long.MAX_VALUE)
+            return 0.0;
+        return Math.min(1.0, (double) (System.nanoTime() - startNanos) / (deadlineNanos - startNanos));
+    }
+
+    // Waits for the run to finish (or stop, if cancelled) and returns the merged total
+    public A await() {
+        for (ForkJoinTask<?> worker : workers)
+            worker.join();
+        return snapshot();
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isDone() {
+        for (ForkJoinTask<?> worker : workers) {
+            if (!worker.isDone())
+                return false;
+        }
+        return true;
+    }
+
+    public long totalTrials() {
+        return trials;
+    }
+
+    public long completedTrials() {
+        return completedTrials.get();
+    }
+
+    public double elapsedSeconds() {
+        return (System.nanoTime() - startNanos) / 1e9;
+    }
+}
@@ -0,0 +1,155 @@
+import java.util.List;
+import java.util.Map;
+
+// Going-first figures from the draws of a going-second run, so one run reports both turns.
+//
+// A going-second run draws six cards a trial, and the first five of a uniform six-card draw
+// are a uniform five-card draw. Scoring them with the going-first weights gives the
+// going-first result at no extra sampling cost, through the same four standard collectors
+// a going-first run uses. Both turns see the same trials, so they are directly comparable:
+// the reported difference and the coin-flip blend (either turn at even odds) are taken per
+// trial, and their intervals account for the shared draws.
+//
+// Add it to the RunSettings of a going-second run. Antithetic draws are in draw order, so the
+// five-card hands are still a fair sample but get none of the variance reduction. Stratified
+// draws put the starters first, so the sixth card is never one and the five-card hands would
+// hold too many; a both-turns run must not use them.
+public class BothTurns implements StatCollector {
+    static final int FIRST_HAND = 5;
+
+    private final CompiledDeck deck;
+    private final List<HandPattern> patterns;
+    private final CompiledPatterns compiled;
+    private final ScoreCache cache;
+    private final StatCollector[] first; // ScoreMoments, PatternCounts, RoleAverages, BestWorst
+    private final ScoreStats coinFlip;   // per trial, the mean of the two turns' scores
+    private final ScoreStats difference; // per trial, going second minus going first
+    private final Trial trial;
+    private final int[] canonical = new int[FIRST_HAND];
+    private final int[] scratch;
+
+    public BothTurns(CompiledDeck deck, List<HandPattern> patterns) {
+        this(deck, patterns, new CompiledPatterns(deck, patterns), deck.scoreCache(FIRST_HAND, false, patterns),
+                new StatCollector[] {
+                        new StatCollectors.ScoreMoments(SimulationEngine.scoreRange(deck, FIRST_HAND, false, patterns)),
+                        new StatCollectors.PatternCounts(patterns),
+                        new StatCollectors.RoleAverages(deck),
+                        new StatCollectors.BestWorst(deck, deck.trackedRoleIds()) },
+                blend(deck, patterns, 0.5, 0.5), blend(deck, patterns, -1.0, 1.0));
+    }
+
+    private BothTurns(CompiledDeck deck, List<HandPattern> patterns, CompiledPatterns compiled, ScoreCache cache,
+                      StatCollector[] first, ScoreStats coinFlip, ScoreStats difference) {
+        this.deck = deck;
+        this.patterns = patterns;
+        this.compiled = compiled;
+        this.cache = cache;
+        this.first = first;
+        this.coinFlip = coinFlip;
+        this.difference = difference;
+        this.trial = new Trial(deck, false, FIRST_HAND, patterns.size());
+        this.scratch = compiled.newScratch();
+    }
+
+    // Stats over the range of a * (going-first score) + b * (going-second score)
+    private static ScoreStats blend(CompiledDeck deck, List<HandPattern> patterns, double a, double b) {
+        ScoreStats firstRange = SimulationEngine.scoreRange(deck, FIRST_HAND, false, patterns);
+        ScoreStats secondRange = SimulationEngine.scoreRange(deck, FIRST_HAND + 1, true, patterns);
+        double low = Math.min(a * firstRange.low(), a * firstRange.high())
+                + Math.min(b * secondRange.low(), b * secondRange.high());
+        double high = Math.max(a * firstRange.low(), a * firstRange.high())
+                + Math.max(b * secondRange.low(), b * secondRange.high());
+        return new ScoreStats(low, high);
+    }
+
+    @Override
+    public StatCollector newInstance() {
+        StatCollector[] fresh = new StatCollector[first.length];
+        for (int c = 0; c < first.length; c++)
+            fresh[c] = first[c].newInstance();
+        return new BothTurns(deck, patterns, compiled, cache, fresh, coinFlip.emptyCopy(), difference.emptyCopy());
+    }
+
+    @Override
+    public void accept(Trial second) {
+        int[] hand = trial.hand;
+        System.arraycopy(second.hand, 0, hand, 0, FIRST_HAND);
+
+        long key = cache != null ? cache.key(hand, FIRST_HAND, canonical) : 0;
+        int slot = cache != null ? cache.find(key) : -1;
+        if (slot >= 0) {
+            trial.score = cache.score(slot);
+            trial.matchMask = cache.mask(slot);
+        } else {
+            int[] scored = hand;
+            if (cache != null) {
+                System.arraycopy(hand, 0, canonical, 0, FIRST_HAND);
+                cache.canonicalize(canonical, FIRST_HAND);
+                scored = canonical;
+            }
+            trial.score = SimulationEngine.evaluateHand(deck, scored, FIRST_HAND, false, compiled, scratch,
+                    trial.matched);
+            long mask = 0;
+            for (int p = 0; p < trial.matched.length && p < 64; p++) {
+                if (trial.matched[p])
+                    mask |= 1L << p;
+            }
+            trial.matchMask = mask;
+            if (cache != null)
+                cache.put(key, trial.score, trial.matchMask);
+        }
+        trial.findDistinct();
+
+        for (StatCollector collector : first)
+            collector.accept(trial);
+        coinFlip.add((trial.score + second.score) / 2);
+        difference.add(second.score - trial.score);
+    }
+
+    @Override
+    public void merge(StatCollector later) {
+        BothTurns other = (BothTurns) later;
+        for (int c = 0; c < first.length; c++)
+            first[c].merge(other.first[c]);
+        coinFlip.merge(other.coinFlip);
+        difference.merge(other.difference);
+    }
+
+    @Override
+    public void report(SimulationResult result) {
+        SimulationResult firstTurn = new SimulationResult();
+        for (StatCollector collector : first)
+            collector.report(firstTurn);
+        result.firstTurn = firstTurn;
+        result.coinFlipAvg = coinFlip.mean();
+        result.coinFlipStdDev = coinFlip.stdDev();
+        result.turnGapAvg = difference.mean();
+        result.turnGapStdDev = difference.stdDev();
+    }
+
+    // The side-by-side section of a both-turns result
+    static void write(SimulationResult result, ReportWriter out) {
+        SimulationResult firstTurn = result.firstTurn;
+        double z = Intervals.z(result.confidence);
+        long n = result.trials;
+        out.line("");
+        out.heading("Both Turns From the Same Draws");
+        out.line("The figures above are for going second. Going first scores the first five cards of each hand.");
+        out.line(String.format("Going first average: %.4f +/- %.4f", firstTurn.avg,
+                Intervals.meanHalfWidth(firstTurn.stdDev, n, z)));
+        out.line(String.format("Going second average: %.4f +/- %.4f", result.avg,
+                Intervals.meanHalfWidth(result.stdDev, n, z)));
+        out.line(String.format("Coin flip average: %.4f +/- %.4f", result.coinFlipAvg,
+                Intervals.meanHalfWidth(result.coinFlipStdDev, n, z)));
+        out.line(String.format("Going second minus going first: %.4f +/- %.4f", result.turnGapAvg,
+                Intervals.meanHalfWidth(result.turnGapStdDev, n, z)));
+        out.line(String.format("Going first median: %.3f, worst hand %.3f %s", firstTurn.median,
+                firstTurn.worstScore, firstTurn.worstHand));
+        for (Map.Entry<HandPattern, Long> entry : result.patternMatches.entrySet()) {
+            double second = (double) entry.getValue() / n * 100;
+            double firstRate = (double) firstTurn.patternMatches.get(entry.getKey()) / n * 100;
+            out.line(String.format("Pattern %s: first %.2f%%, second %.2f%%, coin flip %.2f%%",
+                    entry.getKey(), firstRate, second, (firstRate + second) / 2));
+        }
+    }
+}
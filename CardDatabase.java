@@ -0,0 +1,202 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32C;
+
+// Card id -> name lookup over cards.csv, compiled once into a binary index next to it
+// (cards.csv.idx) and memory-mapped.
+//
+// The index is a sorted id array, an offset array and a UTF-8 string pool, so a lookup is a
+// binary search and a name is only decoded when asked for. The header records the size,
+// timestamp and CRC32C of the CSV it was built from: a matching size and timestamp is
+// trusted as is, otherwise the CSV is hashed and the index rebuilt only if the hash
+// differs. One instance per CSV path is shared by every importer.
+//
+// If the index cannot be written (read-only folder, or a mapped file that cannot be
+// replaced), the same layout is built in memory instead.
+public class CardDatabase {
+    private static final int MAGIC = 0x59434442; // "YCDB"
+    private static final int VERSION = 1;
+    private static final int HEADER = 40;
+
+    private static final Map<Path, CardDatabase> shared = new HashMap<>();
+
+    private final long csvSize;
+    private final long csvModified;
+    private final IntBuffer ids;
+    private final IntBuffer offsets;
+    private final ByteBuffer pool;
+
+    private CardDatabase(ByteBuffer index) {
+        csvSize = index.getLong(8);
+        csvModified = index.getLong(16);
+        int count = index.getInt(32);
+        int poolSize = index.getInt(36);
+        ids = index.slice(HEADER, count * 4).asIntBuffer();
+        offsets = index.slice(HEADER + count * 4, (count + 1) * 4).asIntBuffer();
+        pool = index.slice(HEADER + (2 * count + 1) * 4, poolSize);
+    }
+
+    // The shared database for this CSV, rebuilt if the CSV changed since it was last opened
+    public static synchronized CardDatabase open(String csvPath) throws IOException {
+        Path csv = Paths.get(csvPath).toAbsolutePath().normalize();
+        long size = Files.size(csv);
+        long modified = Files.getLastModifiedTime(csv).toMillis();
+        CardDatabase db = shared.get(csv);
+        if (db == null || db.csvSize != size || db.csvModified != modified) {
+            db = new CardDatabase(loadIndex(csv, size, modified));
+            shared.put(csv, db);
+        }
+        return db;
+    }
+
+    public int size() {
+        return ids.limit();
+    }
+
+    // The card's name, or null if the id is not in the database
+    public String name(int id) {
+        int lo = 0, hi = ids.limit() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int midId = ids.get(mid);
+            if (midId < id) {
+                lo = mid + 1;
+            } else if (midId > id) {
+                hi = mid - 1;
+            } else {
+                int start = offsets.get(mid);
+                byte[] bytes = new byte[offsets.get(mid + 1) - start];
+                pool.get(start, bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private static ByteBuffer loadIndex(Path csv, long size, long modified) throws IOException {
+        Path indexPath = csv.resolveSibling(csv.getFileName() + ".idx");
+        ByteBuffer existing = null;
+        try {
+            if (Files.isRegularFile(indexPath))
+                existing = map(indexPath);
+        } catch (IOException e) {
+            // unreadable: rebuild it
+        }
+        if (existing != null && existing.getLong(8) == size && existing.getLong(16) == modified)
+            return existing;
+
+        byte[] csvBytes = Files.readAllBytes(csv);
+        long hash = crc(csvBytes);
+        if (existing != null && existing.getLong(24) == hash) {
+            // Only touched: keep the index, but record the new timestamp so the next open skips the hash
+            ByteBuffer index = copy(existing);
+            index.putLong(8, size).putLong(16, modified);
+            return write(indexPath, index);
+        }
+        return write(indexPath, build(csvBytes, size, modified, hash));
+    }
+
+    private static ByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (index.limit() < HEADER || index.getInt(0) != MAGIC || index.getInt(4) != VERSION)
+                return null;
+            int count = index.getInt(32);
+            if (count < 0 || (long) HEADER + (2L * count + 1) * 4 + index.getInt(36) != index.limit())
+                return null;
+            return index;
+        }
+    }
+
+    // Writes the index next to the CSV and maps it, or keeps it in memory if that fails
+    private static ByteBuffer write(Path indexPath, ByteBuffer index) {
+        try {
+            Path temp = Files.createTempFile(indexPath.getParent(), indexPath.getFileName().toString(), ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer data = index.duplicate().rewind();
+                while (data.hasRemaining())
+                    channel.write(data);
+            }
+            Files.move(temp, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            ByteBuffer mapped = map(indexPath);
+            return mapped != null ? mapped : index;
+        } catch (IOException | UnsupportedOperationException e) {
+            return index;
+        }
+    }
+
+    // Parses "id,name" lines after the header. A name may be quoted, with "" for a quote in it;
+    // unquoted names may contain commas. Rows without a numeric id are skipped, and a repeated
+    // id keeps its last name.
+    private static ByteBuffer build(byte[] csvBytes, long size, long modified, long hash) throws IOException {
+        TreeMap<Integer, byte[]> names = new TreeMap<>();
+        int poolSize = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new ByteArrayInputStream(csvBytes), StandardCharsets.UTF_8))) {
+            reader.readLine(); // header
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(",", 2);
+                if (parts.length < 2)
+                    continue;
+                int id;
+                try {
+                    id = Integer.parseInt(parts[0].trim());
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                byte[] name = unquote(parts[1].trim()).getBytes(StandardCharsets.UTF_8);
+                byte[] previous = names.put(id, name);
+                poolSize += name.length - (previous != null ? previous.length : 0);
+            }
+        }
+
+        int count = names.size();
+        ByteBuffer index = ByteBuffer.allocate(HEADER + (2 * count + 1) * 4 + poolSize);
+        index.putInt(MAGIC).putInt(VERSION).putLong(size).putLong(modified).putLong(hash)
+                .putInt(count).putInt(poolSize);
+        for (int id : names.keySet())
+            index.putInt(id);
+        int offset = 0;
+        for (byte[] name : names.values()) {
+            index.putInt(offset);
+            offset += name.length;
+        }
+        index.putInt(offset);
+        for (byte[] name : names.values())
+            index.put(name);
+        return index.rewind();
+    }
+
+    static String unquote(String field) {
+        if (field.length() >= 2 && field.startsWith("\"") && field.endsWith("\""))
+            return field.substring(1, field.length() - 1).replace("\"\"", "\"");
+        return field;
+    }
+
+    private static ByteBuffer copy(ByteBuffer buffer) {
+        ByteBuffer copy = ByteBuffer.allocate(buffer.limit());
+        copy.put(buffer.duplicate().rewind());
+        return copy.rewind();
+    }
+
+    private static long crc(byte[] bytes) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes);
+        return crc.getValue();
+    }
+}
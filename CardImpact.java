@@ -0,0 +1,168 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// What each card does for the deck, from the hands of one sampled run: how often each
+// pattern matches and what the hand scores on average when the card is in hand and when
+// it is not, and how many of the copies drawn the OPT rule lets count.
+//
+// Per trial this only adds to primitive counters indexed by card id (and pattern): one pass
+// over the distinct cards in hand, and for each one a pass over the set bits of the match
+// mask. The figures without the card are the run's totals minus those with it, so nothing
+// is counted for the cards left in the deck.
+public class CardImpact implements StatCollector {
+    // The figures of one card, for reports
+    public static class Row {
+        public final String card;
+        public final double inHand;          // fraction of hands holding at least one copy
+        public final double scoreWith, scoreWithout;
+        public final double[] patternWith, patternWithout; // match rate per pattern
+        public final double copiesDrawn;     // per hand holding the card
+        public final double copiesCounted;   // of those, the copies the OPT rule lets score
+
+        Row(String card, double inHand, double scoreWith, double scoreWithout, double[] patternWith,
+            double[] patternWithout, double copiesDrawn, double copiesCounted) {
+            this.card = card;
+            this.inHand = inHand;
+            this.scoreWith = scoreWith;
+            this.scoreWithout = scoreWithout;
+            this.patternWith = patternWith;
+            this.patternWithout = patternWithout;
+            this.copiesDrawn = copiesDrawn;
+            this.copiesCounted = copiesCounted;
+        }
+
+        public double scoreDelta() {
+            return scoreWith - scoreWithout;
+        }
+    }
+
+    private final CompiledDeck deck;
+    private final List<HandPattern> patterns;
+    private final long[] holding;      // card id -> hands with at least one copy
+    private final long[] drawn;        // card id -> copies drawn, over all hands
+    private final double[] scoreWith;  // card id -> summed score of the hands holding it
+    private final long[][] matchWith;  // card id -> pattern -> hands holding it that matched
+    private final long[] matches;      // pattern -> hands that matched
+    private double scoreTotal = 0.0;
+    private long trials = 0;
+
+    public CardImpact(CompiledDeck deck, List<HandPattern> patterns) {
+        this.deck = deck;
+        this.patterns = patterns;
+        int cards = deck.cardCount();
+        holding = new long[cards];
+        drawn = new long[cards];
+        scoreWith = new double[cards];
+        matchWith = new long[cards][patterns.size()];
+        matches = new long[patterns.size()];
+    }
+
+    @Override
+    public StatCollector newInstance() {
+        return new CardImpact(deck, patterns);
+    }
+
+    @Override
+    public void accept(Trial trial) {
+        add(trial, 1);
+    }
+
+    // `copies` draws of the trial's hand; its distinct cards and matches must be filled in
+    void add(Trial trial, long copies) {
+        trials += copies;
+        scoreTotal += trial.score * copies;
+        for (int i = 0; i < trial.handSize; i++)
+            drawn[trial.hand[i]] += copies;
+        boolean wide = matches.length > 64;
+        long mask = trial.matchMask;
+        if (wide) {
+            for (int p = 0; p < matches.length; p++) {
+                if (trial.matched[p])
+                    matches[p] += copies;
+            }
+        } else {
+            for (long m = mask; m != 0; m &= m - 1)
+                matches[Long.numberOfTrailingZeros(m)] += copies;
+        }
+        for (int i = 0; i < trial.distinctCount; i++) {
+            int card = trial.distinct[i];
+            holding[card] += copies;
+            scoreWith[card] += trial.score * copies;
+            long[] row = matchWith[card];
+            if (wide) {
+                for (int p = 0; p < row.length; p++) {
+                    if (trial.matched[p])
+                        row[p] += copies;
+                }
+            } else {
+                for (long m = mask; m != 0; m &= m - 1)
+                    row[Long.numberOfTrailingZeros(m)] += copies;
+            }
+        }
+    }
+
+    @Override
+    public void merge(StatCollector later) {
+        CardImpact other = (CardImpact) later;
+        trials += other.trials;
+        scoreTotal += other.scoreTotal;
+        for (int p = 0; p < matches.length; p++)
+            matches[p] += other.matches[p];
+        for (int card = 0; card < holding.length; card++) {
+            holding[card] += other.holding[card];
+            drawn[card] += other.drawn[card];
+            scoreWith[card] += other.scoreWith[card];
+            for (int p = 0; p < matches.length; p++)
+                matchWith[card][p] += other.matchWith[card][p];
+        }
+    }
+
+    // Empty counters for the same deck and patterns, to refill (see HandHistogram.rescore)
+    CardImpact emptyCopy() {
+        return new CardImpact(deck, patterns);
+    }
+
+    public List<HandPattern> patterns() {
+        return patterns;
+    }
+
+    // One row per card in the deck, the cards that raise the average score most first
+    public List<Row> rows() {
+        List<Row> rows = new ArrayList<>();
+        for (int card = 0; card < holding.length; card++) {
+            long with = holding[card], without = trials - with;
+            double[] patternWith = new double[matches.length];
+            double[] patternWithout = new double[matches.length];
+            for (int p = 0; p < matches.length; p++) {
+                patternWith[p] = rate(matchWith[card][p], with);
+                patternWithout[p] = rate(matches[p] - matchWith[card][p], without);
+            }
+            long counted = deck.isOPT[card] ? with : drawn[card];
+            rows.add(new Row(deck.names[card], rate(with, trials), with > 0 ? scoreWith[card] / with : Double.NaN,
+                    without > 0 ? (scoreTotal - scoreWith[card]) / without : Double.NaN, patternWith, patternWithout,
+                    rate(drawn[card], with), rate(counted, with)));
+        }
+        rows.sort(Comparator.comparingDouble((Row row) -> Double.isNaN(row.scoreDelta()) ? 0.0 : row.scoreDelta())
+                .reversed());
+        return rows;
+    }
+
+    private static double rate(long count, long of) {
+        return of > 0 ? (double) count / of : Double.NaN;
+    }
+
+    @Override
+    public void write(ReportWriter out) {
+        out.line("");
+        out.heading("Card Impact");
+        for (Row row : rows()) {
+            out.line(String.format("%s: in %.2f%% of hands, score %.3f with, %.3f without (%+.3f), "
+                    + "%.2f copies drawn, %.2f counted", row.card, row.inHand * 100, row.scoreWith, row.scoreWithout,
+                    row.scoreDelta(), row.copiesDrawn, row.copiesCounted));
+            for (int p = 0; p < patterns.size(); p++)
+                out.line(String.format("    Pattern %s: %.2f%% with, %.2f%% without", patterns.get(p),
+                        row.patternWith[p] * 100, row.patternWithout[p] * 100));
+        }
+    }
+}
@@ -0,0 +1,186 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinTask;
+
+// How the average score and each pattern's match rate move when one copy of a card is
+// added, removed, or swapped for a blank card that does nothing.
+//
+// Every variant is simulated with the baseline's seed and keeps the ids of the baseline's
+// slots (see DeckOptimizer.Slots). Hands are drawn by slot, so a variant draws the baseline's
+// hand in every trial that does not hold the slot it added, removed or blanked, and the
+// deltas carry far less noise than the baseline's own interval. All the decks run in one
+// BlockRun; the results depend only on the seed.
+public class CardSensitivity {
+    static final String BLANK = "(Blank)";
+    static final int MAX_COPIES = 3;
+
+    // One deck change and what it did to the baseline
+    public static class Variant {
+        final String card;
+        final String change; // "+1", "-1" or "blank"
+        final int deckSize;
+        double avgDelta;
+        double[] patternDeltas; // in probability, per pattern
+
+        Variant(String card, String change, int deckSize) {
+            this.card = card;
+            this.change = change;
+            this.deckSize = deckSize;
+        }
+
+        double largestPatternDelta() {
+            double largest = 0;
+            for (double d : patternDeltas)
+                largest = Math.max(largest, Math.abs(d));
+            return largest;
+        }
+    }
+
+    final SimulationResult baseline;
+    final int deckSize;
+    final List<HandPattern> patterns;
+    final List<Variant> variants = new ArrayList<>(); // largest average score change first
+
+    private CardSensitivity(SimulationResult baseline, int deckSize, List<HandPattern> patterns) {
+        this.baseline = baseline;
+        this.deckSize = deckSize;
+        this.patterns = patterns;
+    }
+
+    // Simulates the deck and every one-copy change of it with the same settings. A stopping
+    // rule is ignored so that every variant runs the same trials on the same streams.
+    public static CardSensitivity run(List<String> deck, Map<String, CardRoles.CardInfo> cardInfos,
+                                      Map<String, Double> weightsFirst, Map<String, Double> weightsSecond,
+                                      List<ComboRule> combos, List<HandPattern> patterns, boolean goingSecond, RunSettings settings) {
+        return start(deck, cardInfos, weightsFirst, weightsSecond, combos, patterns, goingSecond, settings).await()
+                .sensitivity;
+    }
+
+    // The same in the background. Every block of trials is run for every deck, so progress,
+    // cancelling and the block-order fold work as for one simulation, and a stopped run still
+    // compares all the decks on the same hands. Partial results are the baseline's alone; the
+    // final result is the baseline's with the report in its sensitivity field.
+    public static SimulationEngine.Simulation start(List<String> deck, Map<String, CardRoles.CardInfo> cardInfos,
+                                                    Map<String, Double> weightsFirst, Map<String, Double> weightsSecond,
+                                                    List<ComboRule> combos, List<HandPattern> patterns,
+                                                    boolean goingSecond, RunSettings settings) {
+        if (settings.sampling != HandSampler.Sampling.PLAIN)
+            throw new IllegalArgumentException("Card sensitivity draws hands by slot, which needs plain sampling");
+        List<Variant> variants = new ArrayList<>();
+        List<DeckOptimizer.Slots> decks = new ArrayList<>();
+        DeckOptimizer.Slots start = new DeckOptimizer.Slots(deck);
+        decks.add(start);
+        for (String card : new LinkedHashSet<>(deck)) {
+            long copies = deck.stream().filter(card::equals).count();
+            if (copies < MAX_COPIES) {
+                variants.add(new Variant(card, "+1", deck.size() + 1));
+                decks.add(start.withChange(null, card));
+            }
+            variants.add(new Variant(card, "-1", deck.size() - 1));
+            decks.add(start.withChange(card, null));
+            variants.add(new Variant(card, "blank", deck.size()));
+            decks.add(start.withChange(card, BLANK));
+        }
+        List<SimulationEngine.DeckSetup> setups = new ArrayList<>();
+        for (DeckOptimizer.Slots slots : decks)
+            setups.add(new SimulationEngine.DeckSetup(
+                    CompiledDeck.compile(slots.cards, cardInfos, weightsFirst, weightsSecond, combos), goingSecond,
+                    patterns, List.of()));
+
+        // One accumulator per deck, made when a block first fills it. The decks of a block are
+        // forked onto the run's own pool, so a run of few blocks still uses every thread.
+        RunSettings described = new RunSettings().trials(settings.trials).seed(settings.seed);
+        BlockRun<SimulationEngine.BlockStats[]> run = new BlockRun<>(settings.trials, settings.seed, settings.threads,
+                () -> new SimulationEngine.BlockStats[setups.size()],
+                (stats, random, block, trials) -> {
+                    List<ForkJoinTask<?>> tasks = new ArrayList<>();
+                    for (int d = 0; d < setups.size(); d++) {
+                        SimulationEngine.DeckSetup setup = setups.get(d);
+                        int[] ids = decks.get(d).ids;
+                        int index = d;
+                        tasks.add(ForkJoinTask.adapt(() -> {
+                            stats[index] = setup.newStats();
+                            setup.runBlock(stats[index], HandSampler.Sampling.PLAIN, ids,
+                                    BlockRun.blockRandom(settings.seed, block), trials, null, null);
+                        }));
+                    }
+                    ForkJoinTask.invokeAll(tasks);
+                },
+                (into, later) -> {
+                    for (int d = 0; d < into.length; d++)
+                        merge(into, later, d, setups.get(d), false);
+                });
+        return new SimulationEngine.Simulation(run, false,
+                (into, later) -> merge(into, later, 0, setups.get(0), true),
+                stats -> stats[0] != null ? SimulationEngine.describe(SimulationEngine.result(stats[0]), run,
+                        described, settings.seed, HandSampler.Sampling.PLAIN, false) : null,
+                stats -> {
+                    List<SimulationResult> results = new ArrayList<>();
+                    for (int d = 0; d < setups.size(); d++)
+                        results.add(SimulationEngine.result(stats[d] != null ? stats[d] : setups.get(d).newStats()));
+                    SimulationEngine.describe(results.get(0), run, described, settings.seed,
+                            HandSampler.Sampling.PLAIN, false);
+                    CardSensitivity report = report(results, variants, deck.size(), patterns);
+                    report.baseline.sensitivity = report;
+                    return report.baseline;
+                });
+    }
+
+    // Folds deck d of a later block in, making its accumulator if this is the first
+    private static void merge(SimulationEngine.BlockStats[] into, SimulationEngine.BlockStats[] later, int d,
+                              SimulationEngine.DeckSetup setup, boolean live) {
+        if (later[d] == null)
+            return;
+        if (into[d] == null)
+            into[d] = setup.newStats();
+        if (live)
+            into[d].mergeLive(later[d]);
+        else
+            into[d].merge(later[d]);
+    }
+
+    // results holds the baseline's, then one per variant
+    private static CardSensitivity report(List<SimulationResult> results, List<Variant> variants, int deckSize,
+                                          List<HandPattern> patterns) {
+        CardSensitivity report = new CardSensitivity(results.get(0), deckSize, patterns);
+        double[] base = rates(report.baseline, patterns);
+        for (int v = 0; v < variants.size(); v++) {
+            Variant variant = variants.get(v);
+            SimulationResult result = results.get(v + 1);
+            variant.avgDelta = result.avg - report.baseline.avg;
+            double[] rates = rates(result, patterns);
+            variant.patternDeltas = new double[rates.length];
+            for (int p = 0; p < rates.length; p++)
+                variant.patternDeltas[p] = rates[p] - base[p];
+            report.variants.add(variant);
+        }
+        report.variants.sort(Comparator.comparingDouble((Variant v) -> -Math.abs(v.avgDelta))
+                .thenComparingDouble(v -> -v.largestPatternDelta()));
+        return report;
+    }
+
+    private static double[] rates(SimulationResult result, List<HandPattern> patterns) {
+        double[] rates = new double[patterns.size()];
+        for (int p = 0; p < rates.length; p++)
+            rates[p] = (double) result.patternMatches.get(patterns.get(p)) / result.trials;
+        return rates;
+    }
+
+    public void write(ReportWriter out) {
+        out.heading("Card Sensitivity (one copy changed, same random hands)");
+        out.line(String.format("Baseline: %d cards, average %.4f over %,d trials",
+                deckSize, baseline.avg, baseline.trials));
+        for (int p = 0; p < patterns.size(); p++)
+            out.line(String.format("  P%d = %s", p + 1, patterns.get(p)));
+        for (Variant v : variants) {
+            StringBuilder line = new StringBuilder(String.format("%-6s %-40s avg %+.4f", v.change, v.card, v.avgDelta));
+            for (int p = 0; p < v.patternDeltas.length; p++)
+                line.append(String.format("  P%d %+.2f%%", p + 1, v.patternDeltas[p] * 100));
+            out.line(line.toString());
+        }
+        out.line("");
+    }
+}
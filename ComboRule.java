@@ -0,0 +1,66 @@
+import java.util.ArrayList;
+import java.util.List;
+
+// A score bonus for holding certain cards or roles together, from a config line:
+//
+//   combo:Mitsurugi Ritual,Ame no Murakumo no Mitsurugi|2.0    pays when the hand holds both
+//   combo:Ext Ryzeal,@handtrap|Ice Ryzeal|0.5                  ... and holds no Ice Ryzeal
+//   combo:|@starter|-3.0                                       pays when the hand has no starter
+//
+// Items are card names, or a role name after "@" (the role from the card role overrides).
+// The first list is required, the optional middle list forbidden, and the last field the
+// bonus; a negative bonus penalizes the combination. A rule on two cards is a pairwise
+// synergy, or an anti-synergy when negative. Only whether an item is in hand matters, not
+// how many copies. CompiledDeck turns the rules into 64-bit card and role masks, so a rule
+// costs a few ANDs and compares per hand.
+public class ComboRule {
+    final List<String> required;
+    final List<String> forbidden;
+    double bonus;
+
+    public ComboRule(List<String> required, List<String> forbidden, double bonus) {
+        this.required = new ArrayList<>(required);
+        this.forbidden = new ArrayList<>(forbidden);
+        this.bonus = bonus;
+    }
+
+    // A rule from the text after "combo:"
+    static ComboRule parse(String text) {
+        String[] parts = text.split("\\|", -1);
+        if (parts.length < 2 || parts.length > 3)
+            throw new IllegalArgumentException("Expected required|bonus or required|forbidden|bonus: " + text);
+        List<String> forbidden = parts.length == 3 ? items(parts[1]) : List.of();
+        return new ComboRule(items(parts[0]), forbidden, Double.parseDouble(parts[parts.length - 1].trim()));
+    }
+
+    static List<String> items(String list) {
+        List<String> items = new ArrayList<>();
+        for (String item : list.split(",")) {
+            if (!item.trim().isEmpty())
+                items.add(item.trim());
+        }
+        return items;
+    }
+
+    static boolean isRole(String item) {
+        return item.startsWith("@");
+    }
+
+    static String roleOf(String item) {
+        return item.substring(1).trim();
+    }
+
+    public ComboRule copy() {
+        return new ComboRule(required, forbidden, bonus);
+    }
+
+    // The rule in the config line format
+    String line() {
+        return "combo:" + String.join(",", required) + "|" + String.join(",", forbidden) + "|" + bonus;
+    }
+
+    @Override
+    public String toString() {
+        return line().substring("combo:".length());
+    }
+}
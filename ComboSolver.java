@@ -0,0 +1,527 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+// Best end board each hand can reach, from a declarative description of what the cards do.
+//
+// Weights and patterns only say how good a hand looks; this plays it out. Each effect names
+// its card, the zone the card must be in, and a list of moves (summon it, search a card from
+// the deck, send one to the graveyard, tribute field cards as material, ...), optionally once
+// per turn. From the opening hand the solver tries every effect that can resolve, depth
+// first, and scores the board left after every line: the field value of each card on the
+// field plus the hand value of each card still in hand (a handtrap kept for the opponent's
+// turn). A hand's result is the best of those scores.
+//
+// Rules file, one entry per line, # for comments:
+//
+//   Ext Ryzeal|hand|summon,search:Ice Ryzeal|opt   card|zone|moves[|opt]
+//   Ice Ryzeal|hand|normal                         the turn's normal summon
+//   Ryzeal Duo Drive|extra|tribute:Ext Ryzeal,tribute:Ice Ryzeal,summon
+//   Ryzeal Duo Drive=3                             field value
+//   Ash Blossom & Joyous Spring=0,1                field value, hand value
+//   target=3                                       the board the report counts as reached
+//
+// Zones are hand, field, gy and extra. Moves are normal, summon (to the field from its zone),
+// gy (to the graveyard from its zone), search:X (deck to hand), deck:X (deck to field),
+// send:X (deck to gy), discard:X (hand to gy), tribute:X (field to gy), revive:X (gy to
+// field), add:X (gy to hand) and needs:X (X must be on the field); X may be "self". Moves
+// resolve in order and the effect only resolves if all of them can. Extra deck cards come
+// from the #extra section of the deck list (see YDKImporter.getExtraDeckFromYDK).
+//
+// The search keeps the state as per-zone copy counts with an additive Zobrist hash, updated
+// move by move and undone on the way back, so exploring allocates nothing. A transposition
+// table of hash -> best reachable score makes lines that reach the same state in another order
+// expand it once, and the search stops as soon as a line reaches the most any board can
+// score.
+//
+// An entry keeps the depth the search had left below it, and is only reused where no more
+// depth is left than that. A state whose lines looped back to one of its ancestors is not
+// reused at all, since what the loop was worth depends on the path that led there.
+//
+// The result only depends on which cards are in hand, so it is cached across trials and
+// threads in a ScoreCache keyed by card; after warm-up most trials are a single probe.
+public class ComboSolver implements StatCollector {
+    static final int HAND = 0, FIELD = 1, GY = 2, DECK = 3, EXTRA = 4, ZONES = 5;
+    static final List<String> ZONE_NAMES = List.of("hand", "field", "gy", "deck", "extra");
+    static final int MAX_DEPTH = 24;
+    static final int MAX_EFFECTS = 63; // once-per-turn flags share a long with the normal summon
+    static final int TABLE_SIZE = 1 << 15;
+    static final int MAX_PROBES = 8;
+    private static final long NORMAL_USED = 1L << 63;
+    private static final long SCALE = 1000; // scores are kept in thousandths, so undoing a move is exact
+    private static final long IN_PROGRESS = Long.MIN_VALUE;
+
+    // A parsed rules file, before it is tied to a deck
+    public static class Rules {
+        final List<Effect> effects = new ArrayList<>();
+        final Map<String, double[]> values = new LinkedHashMap<>(); // card -> {field value, hand value}
+        double target = Double.NaN;
+
+        public static Rules parse(String text) {
+            Rules rules = new Rules();
+            int lineNumber = 0;
+            for (String raw : text.split("\\R")) {
+                lineNumber++;
+                String line = raw.trim();
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+                try {
+                    if (line.contains("|")) {
+                        rules.effects.add(Effect.parse(line));
+                    } else if (line.contains("=")) {
+                        String name = line.substring(0, line.indexOf('=')).trim();
+                        String[] numbers = line.substring(line.indexOf('=') + 1).split(",");
+                        if (name.equalsIgnoreCase("target")) {
+                            rules.target = Double.parseDouble(numbers[0].trim());
+                        } else {
+                            double hand = numbers.length > 1 ? Double.parseDouble(numbers[1].trim()) : 0.0;
+                            rules.values.put(name, new double[] { Double.parseDouble(numbers[0].trim()), hand });
+                        }
+                    } else {
+                        throw new IllegalArgumentException("expected card|zone|moves or card=value");
+                    }
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Combo rules line " + lineNumber + ": " + e.getMessage());
+                }
+            }
+            if (rules.effects.size() > MAX_EFFECTS)
+                throw new IllegalArgumentException("At most " + MAX_EFFECTS + " effects are supported");
+            return rules;
+        }
+    }
+
+    // One effect line, with card names still unresolved
+    static class Effect {
+        String card;
+        int zone;
+        boolean opt;
+        boolean normal;
+        final List<String> targets = new ArrayList<>(); // per move, the card it moves, or null for self
+        final List<int[]> moves = new ArrayList<>();    // per move, {from, to}; from == to only checks
+
+        static Effect parse(String line) {
+            String[] parts = line.split("\\|");
+            if (parts.length < 3 || parts.length > 4)
+                throw new IllegalArgumentException("expected card|zone|moves[|opt]");
+            Effect effect = new Effect();
+            effect.card = parts[0].trim();
+            effect.zone = zone(parts[1].trim());
+            if (effect.zone == DECK)
+                throw new IllegalArgumentException("effects cannot start in the deck");
+            if (parts.length == 4) {
+                if (!parts[3].trim().equalsIgnoreCase("opt"))
+                    throw new IllegalArgumentException("unknown flag " + parts[3].trim());
+                effect.opt = true;
+            }
+            for (String token : parts[2].split(",")) {
+                String move = token.trim();
+                int colon = move.indexOf(':');
+                String verb = (colon < 0 ? move : move.substring(0, colon)).trim().toLowerCase();
+                String target = colon < 0 ? null : move.substring(colon + 1).trim();
+                if ("self".equalsIgnoreCase(target))
+                    target = null;
+                switch (verb) {
+                    case "normal":
+                        if (effect.zone != HAND)
+                            throw new IllegalArgumentException("only a card in hand can be normal summoned");
+                        effect.normal = true;
+                        effect.add(null, HAND, FIELD);
+                        break;
+                    case "summon":
+                        effect.add(null, effect.zone, FIELD);
+                        break;
+                    case "gy":
+                        effect.add(null, effect.zone, GY);
+                        break;
+                    case "search":
+                        effect.add(named(verb, target), DECK, HAND);
+                        break;
+                    case "deck":
+                        effect.add(named(verb, target), DECK, FIELD);
+                        break;
+                    case "send":
+                        effect.add(named(verb, target), DECK, GY);
+                        break;
+                    case "discard":
+                        effect.add(target, HAND, GY);
+                        break;
+                    case "tribute":
+                        effect.add(target, FIELD, GY);
+                        break;
+                    case "revive":
+                        effect.add(target, GY, FIELD);
+                        break;
+                    case "add":
+                        effect.add(target, GY, HAND);
+                        break;
+                    case "needs":
+                        effect.add(named(verb, target), FIELD, FIELD);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown move " + move);
+                }
+            }
+            return effect;
+        }
+
+        private static String named(String verb, String target) {
+            if (target == null)
+                throw new IllegalArgumentException(verb + " needs a card name");
+            return target;
+        }
+
+        private void add(String target, int from, int to) {
+            targets.add(target);
+            moves.add(new int[] { from, to });
+        }
+
+        private static int zone(String name) {
+            int zone = ZONE_NAMES.indexOf(name.toLowerCase());
+            if (zone < 0)
+                throw new IllegalArgumentException("unknown zone " + name);
+            return zone;
+        }
+    }
+
+    // The rules compiled against one deck, shared read-only by every block
+    private static class Program {
+        int cardCount;          // main deck cards, then extra deck cards not in the main deck
+        int[] deckCopies;       // card id -> copies in the main deck
+        int[] extraCopies;      // card id -> copies in the extra deck
+        int[] source, zone;     // per effect
+        boolean[] opt, normal;
+        int[][] moves;          // per effect, {card, from, to} per move
+        long[] optKeys;
+        long normalKey;
+        long[] zobrist;         // zone * cardCount + card -> hash of one copy there
+        long[] worth;           // zone * cardCount + card -> thousandths of a point for one copy there
+        long bound;             // no board scores more
+        double target;
+        int handSize;
+        ScoreCache cache;       // hand -> best score, or null when hands cannot be keyed
+    }
+
+    private final Program program;
+    private final ScoreStats scores;
+    private long reached = 0;
+
+    // Search state, reused by every hand this block solves
+    private final int[] counts;
+    private final int[] undo;
+    private final int[] keyScratch;
+    private int undoTop = 0;
+    private long hash, value, flags, flagsHash;
+    private final long[] tableKeys = new long[TABLE_SIZE];
+    private final long[] tableValues = new long[TABLE_SIZE];
+    private final int[] tableStamps = new int[TABLE_SIZE];
+    private final int[] tableDepths = new int[TABLE_SIZE]; // see search
+    private int stamp = 0;
+    private int loopedTo; // shallowest depth a line of the current subtree looped back to
+
+    // extraDeck lists the extra deck cards, one entry per copy
+    public ComboSolver(CompiledDeck deck, List<String> extraDeck, Rules rules, int handSize) {
+        this(compile(deck, extraDeck, rules, handSize));
+    }
+
+    private ComboSolver(Program program) {
+        this.program = program;
+        this.scores = new ScoreStats(0, (double) program.bound / SCALE);
+        this.counts = new int[ZONES * program.cardCount];
+        int longest = 0;
+        for (int[] moves : program.moves)
+            longest = Math.max(longest, moves.length);
+        this.undo = new int[(MAX_DEPTH + 1) * longest];
+        this.keyScratch = new int[program.handSize];
+    }
+
+    private static Program compile(CompiledDeck deck, List<String> extraDeck, Rules rules, int handSize) {
+        List<String> names = new ArrayList<>(Arrays.asList(deck.names));
+        for (String name : extraDeck) {
+            if (!names.contains(name))
+                names.add(name);
+        }
+        Program p = new Program();
+        int n = names.size();
+        p.cardCount = n;
+        p.deckCopies = new int[n];
+        for (int card : deck.cards)
+            p.deckCopies[card]++;
+        p.extraCopies = new int[n];
+        for (String name : extraDeck)
+            p.extraCopies[names.indexOf(name)]++;
+
+        // Effects whose cards are in neither deck can never resolve and are left out
+        List<int[]> compiled = new ArrayList<>();
+        List<Effect> kept = new ArrayList<>();
+        for (Effect effect : rules.effects) {
+            int source = names.indexOf(effect.card);
+            if (source < 0)
+                continue;
+            int[] moves = new int[effect.moves.size() * 3];
+            boolean known = true;
+            for (int m = 0; m < effect.moves.size(); m++) {
+                String target = effect.targets.get(m);
+                int card = target == null ? source : names.indexOf(target);
+                known &= card >= 0;
+                moves[m * 3] = card;
+                moves[m * 3 + 1] = effect.moves.get(m)[0];
+                moves[m * 3 + 2] = effect.moves.get(m)[1];
+            }
+            if (known) {
+                compiled.add(moves);
+                kept.add(effect);
+            }
+        }
+        int effects = kept.size();
+        p.moves = compiled.toArray(new int[0][]);
+        p.source = new int[effects];
+        p.zone = new int[effects];
+        p.opt = new boolean[effects];
+        p.normal = new boolean[effects];
+        for (int e = 0; e < effects; e++) {
+            p.source[e] = names.indexOf(kept.get(e).card);
+            p.zone[e] = kept.get(e).zone;
+            p.opt[e] = kept.get(e).opt;
+            p.normal[e] = kept.get(e).normal;
+        }
+
+        SplittableRandom random = new SplittableRandom(0x5EEDC0DEL); // fixed, so hashes are the same every run
+        p.zobrist = new long[ZONES * n];
+        for (int i = 0; i < p.zobrist.length; i++)
+            p.zobrist[i] = random.nextLong();
+        p.optKeys = new long[effects];
+        for (int e = 0; e < effects; e++)
+            p.optKeys[e] = random.nextLong();
+        p.normalKey = random.nextLong();
+
+        p.worth = new long[ZONES * n];
+        for (Map.Entry<String, double[]> entry : rules.values.entrySet()) {
+            int card = names.indexOf(entry.getKey());
+            if (card < 0)
+                continue;
+            p.worth[FIELD * n + card] = Math.round(entry.getValue()[0] * SCALE);
+            p.worth[HAND * n + card] = Math.round(entry.getValue()[1] * SCALE);
+        }
+        for (int card = 0; card < n; card++) {
+            long best = Math.max(0, Math.max(p.worth[FIELD * n + card], p.worth[HAND * n + card]));
+            p.bound += best * (p.deckCopies[card] + p.extraCopies[card]);
+        }
+        p.target = rules.target;
+        p.handSize = handSize;
+        p.cache = ScoreCache.byCard(deck.cardCount(), handSize);
+        return p;
+    }
+
+    @Override
+    public StatCollector newInstance() {
+        return new ComboSolver(program);
+    }
+
+    @Override
+    public void accept(Trial trial) {
+        ScoreCache cache = program.cache;
+        long key = cache != null ? cache.key(trial.hand, trial.handSize, keyScratch) : 0;
+        int slot = cache != null ? cache.find(key) : -1;
+        double score;
+        if (slot >= 0) {
+            score = cache.score(slot);
+        } else {
+            score = (double) solve(trial.hand, trial.handSize) / SCALE;
+            if (cache != null)
+                cache.put(key, score, 0);
+        }
+        scores.add(score);
+        if (score >= program.target)
+            reached++;
+    }
+
+    // Thousandths of a point of the best board this hand can reach
+    long solve(int[] hand, int handSize) {
+        Program p = program;
+        int n = p.cardCount;
+        Arrays.fill(counts, 0);
+        System.arraycopy(p.deckCopies, 0, counts, DECK * n, n);
+        System.arraycopy(p.extraCopies, 0, counts, EXTRA * n, n);
+        for (int i = 0; i < handSize; i++) {
+            counts[DECK * n + hand[i]]--;
+            counts[HAND * n + hand[i]]++;
+        }
+        hash = 0;
+        value = 0;
+        for (int i = 0; i < counts.length; i++) {
+            hash += counts[i] * p.zobrist[i];
+            value += counts[i] * p.worth[i];
+        }
+        flags = 0;
+        flagsHash = 0;
+        undoTop = 0;
+        loopedTo = Integer.MAX_VALUE;
+        if (++stamp == 0) { // wrapped: forget every entry
+            Arrays.fill(tableStamps, 0);
+            stamp = 1;
+        }
+        return search(0);
+    }
+
+    private long search(int depth) {
+        Program p = program;
+        long best = value;
+        if (best >= p.bound || depth == MAX_DEPTH)
+            return best;
+
+        // While a state is in progress its entry holds its depth; once done, the depth that was
+        // left below it, or -1 if a line looped back above it
+        long key = hash ^ flagsHash;
+        int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & (TABLE_SIZE - 1);
+        int entry = -1;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            if (tableStamps[slot] != stamp) {
+                entry = slot;
+                break;
+            }
+            if (tableKeys[slot] == key) {
+                if (tableValues[slot] == IN_PROGRESS) { // a line that loops back gains nothing
+                    loopedTo = Math.min(loopedTo, tableDepths[slot]);
+                    return best;
+                }
+                if (tableDepths[slot] >= MAX_DEPTH - depth)
+                    return tableValues[slot];
+                entry = slot; // searched with less depth left, or under a loop: search it again
+                break;
+            }
+            slot = (slot + 1) & (TABLE_SIZE - 1);
+        }
+        if (entry >= 0) {
+            tableStamps[entry] = stamp;
+            tableKeys[entry] = key;
+            tableValues[entry] = IN_PROGRESS;
+            tableDepths[entry] = depth;
+        }
+
+        int outerLoopedTo = loopedTo;
+        loopedTo = Integer.MAX_VALUE;
+        for (int e = 0; e < p.moves.length && best < p.bound; e++) {
+            long savedFlags = flags, savedFlagsHash = flagsHash;
+            int mark = undoTop;
+            if (resolve(e)) {
+                best = Math.max(best, search(depth + 1));
+                undoTo(mark);
+                flags = savedFlags;
+                flagsHash = savedFlagsHash;
+            }
+        }
+        if (entry >= 0) {
+            tableValues[entry] = best;
+            tableDepths[entry] = loopedTo < depth ? -1 : MAX_DEPTH - depth;
+        }
+        loopedTo = Math.min(outerLoopedTo, loopedTo);
+        return best;
+    }
+
+    // Applies effect e if it can resolve, leaving the state untouched otherwise
+    private boolean resolve(int e) {
+        Program p = program;
+        int n = p.cardCount;
+        if (p.opt[e] && (flags & 1L << e) != 0)
+            return false;
+        if (p.normal[e] && (flags & NORMAL_USED) != 0)
+            return false;
+        if (counts[p.zone[e] * n + p.source[e]] == 0)
+            return false;
+        int[] moves = p.moves[e];
+        int mark = undoTop;
+        for (int i = 0; i < moves.length; i += 3) {
+            int card = moves[i], from = moves[i + 1], to = moves[i + 2];
+            if (counts[from * n + card] == 0) {
+                undoTo(mark);
+                return false;
+            }
+            if (from != to) {
+                move(card, from, to);
+                undo[undoTop++] = card;
+                undo[undoTop++] = from;
+                undo[undoTop++] = to;
+            }
+        }
+        if (p.opt[e]) {
+            flags |= 1L << e;
+            flagsHash ^= p.optKeys[e];
+        }
+        if (p.normal[e]) {
+            flags |= NORMAL_USED;
+            flagsHash ^= p.normalKey;
+        }
+        return true;
+    }
+
+    private void move(int card, int from, int to) {
+        Program p = program;
+        int a = from * p.cardCount + card, b = to * p.cardCount + card;
+        counts[a]--;
+        counts[b]++;
+        hash += p.zobrist[b] - p.zobrist[a];
+        value += p.worth[b] - p.worth[a];
+    }
+
+    private void undoTo(int mark) {
+        while (undoTop > mark) {
+            int to = undo[--undoTop], from = undo[--undoTop], card = undo[--undoTop];
+            move(card, to, from);
+        }
+    }
+
+    @Override
+    public void merge(StatCollector later) {
+        ComboSolver other = (ComboSolver) later;
+        scores.merge(other.scores);
+        reached += other.reached;
+    }
+
+    public double average() {
+        return scores.mean();
+    }
+
+    public double stdDev() {
+        return scores.stdDev();
+    }
+
+    public double median() {
+        return scores.median();
+    }
+
+    public double target() {
+        return program.target;
+    }
+
+    // Share of hands whose best board reaches the target, or NaN without one
+    public double reachedRate() {
+        return Double.isNaN(program.target) ? Double.NaN : (double) reached / Math.max(1, scores.count());
+    }
+
+    long reached() {
+        return reached;
+    }
+
+    long trials() {
+        return scores.count();
+    }
+
+    @Override
+    public void write(ReportWriter out) {
+        long n = scores.count();
+        out.line("");
+        out.heading("Combo Lines");
+        out.line(String.format("Average best end board: %.4f +/- %.4f", scores.mean(),
+                Intervals.meanHalfWidth(scores.stdDev(), n, Intervals.z(0.95))));
+        out.line(String.format("Median: %.3f, best %.3f of at most %.3f", scores.median(), scores.max(),
+                (double) program.bound / SCALE));
+        if (!Double.isNaN(program.target)) {
+            double[] interval = Intervals.wilson(reached, n, Intervals.z(0.95));
+            out.line(String.format("Reaches %.3f: %.2f%% (95%% interval %.2f%% - %.2f%%)", program.target,
+                    100.0 * reached / n, interval[0] * 100, interval[1] * 100));
+        }
+    }
+}
@@ -0,0 +1,302 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// A deck list resolved once against the role/weight overrides. Every distinct card
+// name gets an int id, and the per-card lookups the simulation needs live in parallel
+// arrays indexed by that id, so the trial loop works on int[] only.
+public class CompiledDeck {
+    final String[] names;          // card id -> card name
+    final int[] cards;             // the deck list as card ids, in deck order
+    final int[] roleOf;            // card id -> role id
+    final boolean[] isOPT;         // card id -> only the first copy counts
+    final double[] weightFirst;    // card id -> going first weight
+    final double[] weightSecond;   // card id -> going second weight
+    final String[] roleNames;      // role id -> role name
+    final List<ComboRule> combos;  // as given, for telling cards apart (see cardClasses)
+
+    // Combo rules as masks over card ids and role ids; rules that can never pay are left out
+    private final long[] comboNeedCards, comboNeedRoles, comboBanCards, comboBanRoles;
+    private final double[] comboBonus;
+
+    // Score caches by signature (see ScoreCache). They live and die with this compiled deck, so
+    // changing roles or weights, which recompiles the deck, drops them; changing the patterns or
+    // the turn gives a new signature.
+    private final Map<String, ScoreCache> scoreCaches = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ScoreCache> eldest) {
+            return size() > 4;
+        }
+    };
+
+    // Roles whose distinct cards are counted per hand in the results
+    static final List<String> TRACKED_ROLES = List.of("starter", "extender", "handtrap", "soft garnet");
+
+    private CompiledDeck(String[] names, int[] cards, int[] roleOf, boolean[] isOPT,
+                         double[] weightFirst, double[] weightSecond, String[] roleNames, List<ComboRule> combos) {
+        this.names = names;
+        this.cards = cards;
+        this.roleOf = roleOf;
+        this.isOPT = isOPT;
+        this.weightFirst = weightFirst;
+        this.weightSecond = weightSecond;
+        this.roleNames = roleNames;
+        this.combos = combos;
+
+        List<long[]> masks = new ArrayList<>();
+        List<Double> bonuses = new ArrayList<>();
+        if (!combos.isEmpty() && (names.length > 64 || roleNames.length > 64))
+            throw new IllegalArgumentException("Combo rules need at most 64 different cards and roles in the deck");
+        for (ComboRule rule : combos) {
+            long[] mask = new long[4]; // need cards, need roles, ban cards, ban roles
+            boolean possible = true;
+            for (String item : rule.required) {
+                int bit = ComboRule.isRole(item) ? roleId(ComboRule.roleOf(item)) : cardId(item);
+                possible &= bit >= 0;
+                if (bit >= 0)
+                    mask[ComboRule.isRole(item) ? 1 : 0] |= 1L << bit;
+            }
+            for (String item : rule.forbidden) {
+                int bit = ComboRule.isRole(item) ? roleId(ComboRule.roleOf(item)) : cardId(item);
+                if (bit >= 0) // a card the deck does not run is never in hand
+                    mask[ComboRule.isRole(item) ? 3 : 2] |= 1L << bit;
+            }
+            if (possible && rule.bonus != 0) {
+                masks.add(mask);
+                bonuses.add(rule.bonus);
+            }
+        }
+        int n = masks.size();
+        comboNeedCards = new long[n];
+        comboNeedRoles = new long[n];
+        comboBanCards = new long[n];
+        comboBanRoles = new long[n];
+        comboBonus = new double[n];
+        for (int r = 0; r < n; r++) {
+            comboNeedCards[r] = masks.get(r)[0];
+            comboNeedRoles[r] = masks.get(r)[1];
+            comboBanCards[r] = masks.get(r)[2];
+            comboBanRoles[r] = masks.get(r)[3];
+            comboBonus[r] = bonuses.get(r);
+        }
+    }
+
+    public static CompiledDeck compile(List<String> deck, Map<String, CardRoles.CardInfo> cardInfos,
+                                       Map<String, Double> weightsFirst, Map<String, Double> weightsSecond) {
+        return compile(deck, cardInfos, weightsFirst, weightsSecond, List.of());
+    }
+
+    public static CompiledDeck compile(List<String> deck, Map<String, CardRoles.CardInfo> cardInfos,
+                                       Map<String, Double> weightsFirst, Map<String, Double> weightsSecond,
+                                       List<ComboRule> combos) {
+        Map<String, Integer> cardIds = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        int[] cards = new int[deck.size()];
+        for (int i = 0; i < cards.length; i++) {
+            String name = deck.get(i);
+            Integer id = cardIds.get(name);
+            if (id == null) {
+                id = names.size();
+                cardIds.put(name, id);
+                names.add(name);
+            }
+            cards[i] = id;
+        }
+
+        int cardCount = names.size();
+        int[] roleOf = new int[cardCount];
+        boolean[] isOPT = new boolean[cardCount];
+        double[] weightFirst = new double[cardCount];
+        double[] weightSecond = new double[cardCount];
+        Map<String, Integer> roleIds = new HashMap<>();
+        List<String> roleNames = new ArrayList<>();
+
+        for (int id = 0; id < cardCount; id++) {
+            String name = names.get(id);
+            CardRoles.CardInfo info = CardRoles.getEffectiveInfo(name, cardInfos);
+            String role = info.role != null ? info.role : "unknown";
+            Integer roleId = roleIds.get(role);
+            if (roleId == null) {
+                roleId = roleNames.size();
+                roleIds.put(role, roleId);
+                roleNames.add(role);
+            }
+            roleOf[id] = roleId;
+            isOPT[id] = info.isOPT;
+            weightFirst[id] = CardWeights.getWeightGoingFirst(name, weightsFirst);
+            weightSecond[id] = CardWeights.getWeightGoingSecond(name, weightsSecond);
+        }
+
+        return new CompiledDeck(names.toArray(new String[0]), cards, roleOf, isOPT,
+                weightFirst, weightSecond, roleNames.toArray(new String[0]),
+                combos.stream().map(ComboRule::copy).toList());
+    }
+
+    public int size() {
+        return cards.length;
+    }
+
+    public int cardCount() {
+        return names.length;
+    }
+
+    public int roleCount() {
+        return roleNames.length;
+    }
+
+    // Card id for a card name, or -1 if the deck does not run it
+    public int cardId(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name))
+                return i;
+        }
+        return -1;
+    }
+
+    // Role id for a role name, or -1 if no card in the deck has that role
+    public int roleId(String role) {
+        for (int i = 0; i < roleNames.length; i++) {
+            if (roleNames[i].equals(role))
+                return i;
+        }
+        return -1;
+    }
+
+    // Groups cards that no statistic can tell apart into one class, and returns card id -> class id.
+    // Because of the OPT rule and the distinct-card role counts, two different cards are only
+    // interchangeable when neither is named by a pattern and either:
+    //  - both are inert: no weight, and a role that no pattern or report looks at, or
+    //  - both count every copy (not OPT under the overrides or the default roles), share role and
+    //    weights, and their role is not one of the per-card role counts in the report.
+    // Cards and roles named by a combo rule count as named by a pattern.
+    public int[] cardClasses(List<HandPattern> patterns) {
+        Set<String> namedCards = new HashSet<>();
+        Set<String> usedRoles = new HashSet<>(TRACKED_ROLES);
+        for (HandPattern pattern : patterns) {
+            namedCards.addAll(pattern.getRequiredCards());
+            usedRoles.addAll(pattern.getRoleCounts().keySet());
+        }
+        for (ComboRule rule : combos) {
+            List<String> items = new ArrayList<>(rule.required);
+            items.addAll(rule.forbidden);
+            for (String item : items) {
+                if (ComboRule.isRole(item))
+                    usedRoles.add(ComboRule.roleOf(item));
+                else
+                    namedCards.add(item);
+            }
+        }
+
+        Map<String, Integer> classIds = new HashMap<>();
+        int[] classOf = new int[names.length];
+        for (int id = 0; id < names.length; id++) {
+            CardRoles.CardInfo defaults = CardRoles.getRole(names[id]);
+            String role = roleNames[roleOf[id]];
+            String key = null;
+            if (!namedCards.contains(names[id])) {
+                if (weightFirst[id] == 0 && weightSecond[id] == 0
+                        && !usedRoles.contains(role) && !usedRoles.contains(defaults.role)) {
+                    key = "inert";
+                } else if (!isOPT[id] && !defaults.isOPT && !TRACKED_ROLES.contains(role)) {
+                    key = role + "|" + defaults.role + "|" + weightFirst[id] + "|" + weightSecond[id];
+                }
+            }
+            if (key == null)
+                key = "card|" + id;
+            Integer classId = classIds.get(key);
+            if (classId == null) {
+                classId = classIds.size();
+                classIds.put(key, classId);
+            }
+            classOf[id] = classId;
+        }
+        return classOf;
+    }
+
+    // Shared score cache for hands of this size under these patterns, or null if they cannot be cached
+    public synchronized ScoreCache scoreCache(int handSize, boolean goingSecond, List<HandPattern> patterns) {
+        String signature = ScoreCache.signature(handSize, goingSecond, patterns);
+        if (scoreCaches.containsKey(signature))
+            return scoreCaches.get(signature);
+        ScoreCache cache = ScoreCache.create(this, handSize, goingSecond, patterns);
+        scoreCaches.put(signature, cache);
+        return cache;
+    }
+
+    // Role ids of TRACKED_ROLES, in that order; -1 where no card has the role
+    public int[] trackedRoleIds() {
+        int[] ids = new int[TRACKED_ROLES.size()];
+        for (int i = 0; i < ids.length; i++)
+            ids[i] = roleId(TRACKED_ROLES.get(i));
+        return ids;
+    }
+
+    public boolean hasCombos() {
+        return comboBonus.length > 0;
+    }
+
+    // Sum of the bonuses of the combo rules a hand satisfies, from the masks of the card ids and
+    // role ids in it
+    public double comboBonus(long cardMask, long roleMask) {
+        double bonus = 0;
+        for (int r = 0; r < comboBonus.length; r++) {
+            if ((cardMask & comboNeedCards[r]) == comboNeedCards[r] && (roleMask & comboNeedRoles[r]) == comboNeedRoles[r]
+                    && (cardMask & comboBanCards[r]) == 0 && (roleMask & comboBanRoles[r]) == 0)
+                bonus += comboBonus[r];
+        }
+        return bonus;
+    }
+
+    // Lowest and highest total bonus the combo rules can add to a hand
+    double[] comboBonusRange() {
+        double low = 0, high = 0;
+        for (double bonus : comboBonus) {
+            if (bonus < 0)
+                low += bonus;
+            else
+                high += bonus;
+        }
+        return new double[] { low, high };
+    }
+
+    public double comboBonus(int[] hand, int handSize) {
+        long cards = 0, roles = 0;
+        for (int i = 0; i < handSize; i++) {
+            cards |= 1L << hand[i];
+            roles |= 1L << roleOf[hand[i]];
+        }
+        return comboBonus(cards, roles);
+    }
+
+    public double[] weights(boolean goingSecond) {
+        return goingSecond ? weightSecond : weightFirst;
+    }
+
+    // The deck list ordered by weight, heaviest first, for antithetic draws
+    public int[] cardsByWeight(boolean goingSecond) {
+        double[] weights = weights(goingSecond);
+        return Arrays.stream(cards).boxed()
+                .sorted((a, b) -> Double.compare(weights[b], weights[a]))
+                .mapToInt(Integer::intValue).toArray();
+    }
+
+    // card id -> whether the card has the role; all false for -1
+    public boolean[] hasRole(int role) {
+        boolean[] result = new boolean[names.length];
+        for (int id = 0; id < names.length; id++)
+            result[id] = roleOf[id] == role;
+        return result;
+    }
+
+    public List<String> namesOf(int[] hand, int handSize) {
+        List<String> list = new ArrayList<>(handSize);
+        for (int i = 0; i < handSize; i++)
+            list.add(names[hand[i]]);
+        return list;
+    }
+}
@@ -0,0 +1,131 @@
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Hand patterns resolved once against a compiled deck.
+//
+// Each pattern becomes a short list of (card id, copies) and (role id, count) requirements,
+// so matching a hand is one pass to count its cards and roles and then a few integer
+// comparisons per pattern. Every pattern is checked once per hand, and the same result
+// feeds the score and the match counts.
+//
+// Roles here follow HandPattern.matches: the default role of each card from CardRoles, with
+// an OPT card counting once towards its role however many copies are in the hand.
+// Immutable, so one instance is shared by all worker threads; each thread brings its own
+// scratch array (see newScratch).
+public class CompiledPatterns {
+    final int patternCount;
+    final double[] values;         // pattern -> hand value added when it matches
+    private final int cardCount;
+    private final int roleCount;
+    private final int[] patternRoleOf;   // card id -> default role id, or -1 if no pattern asks for it
+    private final boolean[] countOnce;   // card id -> OPT by default
+    private final int[][] needCards;     // pattern -> {card id, copies, card id, copies, ...}
+    private final int[][] needRoles;     // pattern -> {role id, count, ...}
+    private final boolean[] impossible;  // pattern names a card that is not in the deck
+
+    public CompiledPatterns(CompiledDeck deck, List<HandPattern> patterns) {
+        patternCount = patterns.size();
+        cardCount = deck.cardCount();
+        values = new double[patternCount];
+        needCards = new int[patternCount][];
+        needRoles = new int[patternCount][];
+        impossible = new boolean[patternCount];
+
+        Map<String, Integer> cardIds = new HashMap<>();
+        for (int id = 0; id < cardCount; id++)
+            cardIds.put(deck.names[id], id);
+        Map<String, Integer> roleIds = new HashMap<>();
+        for (HandPattern pattern : patterns) {
+            for (String role : pattern.getRoleCounts().keySet())
+                roleIds.putIfAbsent(role, roleIds.size());
+        }
+
+        roleCount = roleIds.size();
+        patternRoleOf = new int[cardCount];
+        countOnce = new boolean[cardCount];
+        for (int id = 0; id < cardCount; id++) {
+            CardRoles.CardInfo defaults = CardRoles.getRole(deck.names[id]);
+            patternRoleOf[id] = roleIds.getOrDefault(defaults.role, -1);
+            countOnce[id] = defaults.isOPT;
+        }
+
+        for (int p = 0; p < patternCount; p++) {
+            HandPattern pattern = patterns.get(p);
+            values[p] = pattern.getHandValue();
+
+            Map<Integer, Integer> copies = new HashMap<>();
+            for (String name : pattern.getRequiredCards()) {
+                Integer id = cardIds.get(name);
+                if (id == null)
+                    impossible[p] = true;
+                else
+                    copies.merge(id, 1, Integer::sum);
+            }
+            needCards[p] = flatten(copies);
+
+            Map<Integer, Integer> counts = new HashMap<>();
+            for (Map.Entry<String, Integer> entry : pattern.getRoleCounts().entrySet()) {
+                if (entry.getValue() > 0)
+                    counts.put(roleIds.get(entry.getKey()), entry.getValue());
+            }
+            needRoles[p] = flatten(counts);
+        }
+    }
+
+    private static int[] flatten(Map<Integer, Integer> counts) {
+        int[] pairs = new int[counts.size() * 2];
+        int i = 0;
+        for (Map.Entry<Integer, Integer> entry : counts.entrySet()) {
+            pairs[i++] = entry.getKey();
+            pairs[i++] = entry.getValue();
+        }
+        return pairs;
+    }
+
+    // Zeroed scratch for match: card counts followed by role counts
+    public int[] newScratch() {
+        return new int[cardCount + roleCount];
+    }
+
+    // Sets matched[p] for every pattern. scratch must come from newScratch and is left zeroed again.
+    public void match(int[] hand, int handSize, int[] scratch, boolean[] matched) {
+        for (int i = 0; i < handSize; i++)
+            count(hand[i], scratch);
+        matchCounted(scratch, matched);
+        clear(hand, handSize, scratch);
+    }
+
+    // The steps of match, for a hand that grows a card at a time (see MultiTurn): count each
+    // card as it joins the hand, match whenever needed, and clear once the hand is done
+    void count(int card, int[] scratch) {
+        boolean first = scratch[card]++ == 0;
+        int role = patternRoleOf[card];
+        if (role >= 0 && (first || !countOnce[card]))
+            scratch[cardCount + role]++;
+    }
+
+    void matchCounted(int[] scratch, boolean[] matched) {
+        int roles = cardCount;
+        for (int p = 0; p < patternCount; p++) {
+            boolean ok = !impossible[p];
+            int[] cards = needCards[p];
+            for (int i = 0; ok && i < cards.length; i += 2)
+                ok = scratch[cards[i]] >= cards[i + 1];
+            int[] counts = needRoles[p];
+            for (int i = 0; ok && i < counts.length; i += 2)
+                ok = scratch[roles + counts[i]] >= counts[i + 1];
+            matched[p] = ok;
+        }
+    }
+
+    void clear(int[] hand, int handSize, int[] scratch) {
+        for (int i = 0; i < handSize; i++) {
+            int card = hand[i];
+            scratch[card] = 0;
+            int role = patternRoleOf[card];
+            if (role >= 0)
+                scratch[cardCount + role] = 0;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// A result as one CSV row, so the rows of many runs can be appended into one table. The
+// `run` columns come first, then the summary, then the match rate of each pattern (the
+// probability for an exact run) headed by the pattern as a config line. A sensitivity run
+// is one row per deck change.
+public class CsvReport {
+
+    public static String of(SimulationResult result, Map<String, String> run, boolean header) {
+        if (result.sensitivity != null)
+            return sensitivity(result.sensitivity, run, header);
+        List<String> names = new ArrayList<>(run.keySet());
+        List<String> values = new ArrayList<>(run.values());
+        add(names, values, "exact", String.valueOf(result.exact));
+        add(names, values, "trials", String.valueOf(result.exact ? result.distinctHands : result.trials));
+        add(names, values, "seed", result.seed != null ? String.valueOf(result.seed) : "");
+        add(names, values, "sampling", result.sampling != null ? result.sampling.name().toLowerCase() : "");
+        add(names, values, "avg", String.valueOf(result.avg));
+        double half = result.exact ? 0.0
+                : Intervals.meanHalfWidth(result.stdDev, result.trials, Intervals.z(result.confidence));
+        add(names, values, "avg_half_width", String.valueOf(half));
+        add(names, values, "median", String.valueOf(result.median));
+        add(names, values, "variance", String.valueOf(result.variance));
+        add(names, values, "std_dev", String.valueOf(result.stdDev));
+        if (result.distribution != null) {
+            for (double q : SimulationResult.PERCENTILES)
+                add(names, values, String.format("p%.0f", q * 100), String.valueOf(result.percentile(q)));
+        }
+        if (result.distribution != null && !Double.isNaN(result.brickBelow)) {
+            add(names, values, "brick_below", String.valueOf(result.brickBelow));
+            add(names, values, "brick_rate", String.valueOf(result.brickRate(result.brickBelow)));
+        }
+        add(names, values, "best_score", String.valueOf(result.bestScore));
+        add(names, values, "best_hand", String.join(";", result.bestHand));
+        add(names, values, "worst_score", String.valueOf(result.worstScore));
+        add(names, values, "worst_hand", String.join(";", result.worstHand));
+        add(names, values, "avg_starters", String.valueOf(result.avgStarters));
+        add(names, values, "avg_extenders", String.valueOf(result.avgExtenders));
+        add(names, values, "avg_handtraps", String.valueOf(result.avgHandtraps));
+        add(names, values, "avg_soft_garnets", String.valueOf(result.avgSoftGarnets));
+        if (result.firstTurn != null) {
+            add(names, values, "first_avg", String.valueOf(result.firstTurn.avg));
+            add(names, values, "first_std_dev", String.valueOf(result.firstTurn.stdDev));
+            add(names, values, "coin_flip_avg", String.valueOf(result.coinFlipAvg));
+            add(names, values, "coin_flip_std_dev", String.valueOf(result.coinFlipStdDev));
+            add(names, values, "second_minus_first", String.valueOf(result.turnGapAvg));
+            add(names, values, "second_minus_first_std_dev", String.valueOf(result.turnGapStdDev));
+        }
+        ComboSolver combos = result.collector(ComboSolver.class);
+        if (combos != null) {
+            add(names, values, "combo_avg", String.valueOf(combos.average()));
+            add(names, values, "combo_std_dev", String.valueOf(combos.stdDev()));
+            add(names, values, "combo_target_rate", String.valueOf(combos.reachedRate()));
+        }
+        if (result.exact) {
+            for (Map.Entry<HandPattern, Double> entry : result.patternProbabilities.entrySet())
+                add(names, values, SimulatorConfig.patternLine(entry.getKey()), String.valueOf(entry.getValue()));
+        } else {
+            for (Map.Entry<HandPattern, Long> entry : result.patternMatches.entrySet())
+                add(names, values, SimulatorConfig.patternLine(entry.getKey()), String.valueOf((double) entry.getValue() / result.trials));
+        }
+        if (result.turns != null) {
+            MultiTurn.Turns turns = result.turns;
+            for (int t = 1; t < turns.turns; t++) {
+                String turn = "turn" + (t + 1) + "_";
+                add(names, values, turn + "avg", String.valueOf(turns.avg[t]));
+                add(names, values, turn + "starter_rate", String.valueOf((double) turns.withStarter[t] / turns.trials));
+                for (int p = 0; p < turns.patterns.size(); p++)
+                    add(names, values, turn + SimulatorConfig.patternLine(turns.patterns.get(p)),
+                            String.valueOf((double) turns.patternMatches[t][p] / turns.trials));
+            }
+        }
+        if (result.firstTurn != null) {
+            for (Map.Entry<HandPattern, Long> entry : result.firstTurn.patternMatches.entrySet())
+                add(names, values, "first: " + SimulatorConfig.patternLine(entry.getKey()),
+                        String.valueOf((double) entry.getValue() / result.trials));
+        }
+
+        StringBuilder csv = new StringBuilder();
+        if (header)
+            row(csv, names);
+        row(csv, values);
+        return csv.toString();
+    }
+
+    // One row per deck change instead, with each pattern's change in match rate
+    private static String sensitivity(CardSensitivity report, Map<String, String> run, boolean header) {
+        StringBuilder csv = new StringBuilder();
+        if (header) {
+            List<String> names = new ArrayList<>(run.keySet());
+            names.addAll(List.of("card", "change", "deck_size", "avg_delta"));
+            for (HandPattern pattern : report.patterns)
+                names.add(SimulatorConfig.patternLine(pattern));
+            row(csv, names);
+        }
+        for (CardSensitivity.Variant v : report.variants) {
+            List<String> values = new ArrayList<>(run.values());
+            values.addAll(List.of(v.card, v.change, String.valueOf(v.deckSize), String.valueOf(v.avgDelta)));
+            for (double delta : v.patternDeltas)
+                values.add(String.valueOf(delta));
+            row(csv, values);
+        }
+        return csv.toString();
+    }
+
+    private static void add(List<String> names, List<String> values, String name, String value) {
+        names.add(name);
+        values.add(value);
+    }
+
+    private static void row(StringBuilder csv, List<String> cells) {
+        for (int i = 0; i < cells.size(); i++) {
+            if (i > 0)
+                csv.append(',');
+            csv.append(quote(cells.get(i)));
+        }
+        csv.append('\n');
+    }
+
+    static String quote(String cell) {
+        if (cell.indexOf(',') < 0 && cell.indexOf('"') < 0 && cell.indexOf('\n') < 0)
+            return cell;
+        return '"' + cell.replace("\"", "\"\"") + '"';
+    }
+}
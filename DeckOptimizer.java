@@ -0,0 +1,424 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+// Searches card counts for the deck list that maximizes an objective, by simulated annealing.
+//
+// Every candidate is simulated with the same seed, so all candidates see the same random
+// streams (common random numbers). Hands are drawn by slot (see Slots): a swap puts the new
+// card in the slot of the card it replaces, an added card gets a new slot and a removed
+// card's slot is dropped, and only the hands holding the changed slot differ between two
+// neighbouring lists, whatever their sizes. The difference between them is then measured
+// with far less noise than either value on its own.
+//
+// Each step proposes a batch of neighbours of the current list and simulates them in
+// parallel. The best of the batch replaces the current list if it is better, or with the
+// usual Metropolis probability if it is worse. Results depend only on the seed, never on the
+// thread count. Candidates already simulated are remembered by their card counts.
+public class DeckOptimizer {
+
+    // A card the search may use, with the copies it may run
+    public static class PoolCard {
+        final String name;
+        final int min, max;
+
+        public PoolCard(String name, int min, int max) {
+            if (min < 0 || max < min)
+                throw new IllegalArgumentException("Bad copy range for " + name + ": " + min + "-" + max);
+            this.name = name;
+            this.min = min;
+            this.max = max;
+        }
+    }
+
+    // What the search maximizes, read off a candidate's simulation result
+    public interface Objective {
+        double of(SimulationResult result);
+
+        String describe();
+    }
+
+    public static Objective averageScore() {
+        return new Objective() {
+            public double of(SimulationResult result) {
+                return result.avg;
+            }
+
+            public String describe() {
+                return "average score";
+            }
+        };
+    }
+
+    // Probability of a hand matching the pattern, which must be one of the optimizer's patterns
+    public static Objective patternRate(HandPattern pattern) {
+        return new Objective() {
+            public double of(SimulationResult result) {
+                return (double) result.patternMatches.get(pattern) / result.trials;
+            }
+
+            public String describe() {
+                return "match rate of " + pattern;
+            }
+        };
+    }
+
+    // Score at quantile q, e.g. 0.1 for the score nine hands in ten reach or beat
+    public static Objective percentile(double q) {
+        if (q < 0 || q > 1)
+            throw new IllegalArgumentException("Quantile must be between 0 and 1");
+        return new Objective() {
+            public double of(SimulationResult result) {
+                return result.collector(StatCollectors.ScoreMoments.class).scores.quantile(q);
+            }
+
+            public String describe() {
+                return String.format("%.0fth percentile score", q * 100);
+            }
+        };
+    }
+
+    // A deck list with a fixed id for each slot, for drawing hands by slot (see
+    // HandSampler.drawBySlot). A change keeps the ids of every slot it does not touch, so on
+    // the same seed the changed list draws the same hands except those holding that slot.
+    static class Slots {
+        final List<String> cards;
+        final int[] ids;
+
+        Slots(List<String> cards) {
+            this(cards, IntStream.range(0, cards.size()).toArray());
+        }
+
+        private Slots(List<String> cards, int[] ids) {
+            this.cards = cards;
+            this.ids = ids;
+        }
+
+        // One copy of `out` replaced by `in` in the same slot. With `out` null, `in` is added in
+        // a new slot; with `in` null, the last copy of `out` is removed along with its slot.
+        Slots withChange(String out, String in) {
+            List<String> changed = new ArrayList<>(cards);
+            if (out != null && in != null) {
+                changed.set(changed.lastIndexOf(out), in);
+                return new Slots(changed, ids);
+            } else if (in != null) {
+                changed.add(in);
+                int[] added = Arrays.copyOf(ids, ids.length + 1);
+                added[ids.length] = Arrays.stream(ids).max().orElse(-1) + 1;
+                return new Slots(changed, added);
+            }
+            int slot = changed.lastIndexOf(out);
+            changed.remove(slot);
+            int[] kept = new int[ids.length - 1];
+            System.arraycopy(ids, 0, kept, 0, slot);
+            System.arraycopy(ids, slot + 1, kept, slot, kept.length - slot);
+            return new Slots(changed, kept);
+        }
+
+        int size() {
+            return cards.size();
+        }
+    }
+
+    // The best list found and how the search went
+    public static class Result {
+        List<String> deck;          // best deck list
+        double value;               // objective of the best list
+        List<String> startDeck;
+        double startValue;
+        int steps;                  // annealing steps taken
+        int evaluated;              // distinct candidates simulated
+
+        // Copies of each card, in the order the list first has them, e.g. "3x Ext Ryzeal"
+        public List<String> countLines() {
+            Map<String, Integer> counts = new LinkedHashMap<>();
+            for (String name : deck)
+                counts.merge(name, 1, Integer::sum);
+            List<String> lines = new ArrayList<>();
+            for (Map.Entry<String, Integer> entry : counts.entrySet())
+                lines.add(entry.getValue() + "x " + entry.getKey());
+            return lines;
+        }
+    }
+
+    private final List<PoolCard> pool;
+    private final Map<String, CardRoles.CardInfo> cardInfos;
+    private final Map<String, Double> weightsFirst, weightsSecond;
+    private final List<HandPattern> patterns;
+    private final boolean goingSecond;
+    private final Objective objective;
+
+    private int minSize = 40, maxSize = 40;
+    private int steps = 500;
+    private int neighbours = 4;
+    private double startTemperature = 0; // 0 to pick one from the first batch
+    private RunSettings run = new RunSettings().trials(20000);
+    private List<ComboRule> combos = List.of();
+
+    private final Map<String, Double> evaluated = new HashMap<>();
+    private volatile boolean cancelled = false;
+    private volatile int stepsDone = 0;
+    private volatile double bestValue = Double.NaN;
+
+    public DeckOptimizer(List<PoolCard> pool, Map<String, CardRoles.CardInfo> cardInfos,
+                         Map<String, Double> weightsFirst, Map<String, Double> weightsSecond,
+                         List<HandPattern> patterns, boolean goingSecond, Objective objective) {
+        this.pool = pool;
+        this.cardInfos = cardInfos;
+        this.weightsFirst = weightsFirst;
+        this.weightsSecond = weightsSecond;
+        this.patterns = patterns;
+        this.goingSecond = goingSecond;
+        this.objective = objective;
+    }
+
+    // Combo rules to score every candidate with
+    public DeckOptimizer combos(List<ComboRule> combos) {
+        this.combos = List.copyOf(combos);
+        return this;
+    }
+
+    public DeckOptimizer deckSize(int min, int max) {
+        if (min < 6 || max < min)
+            throw new IllegalArgumentException("Bad deck size range: " + min + "-" + max);
+        this.minSize = min;
+        this.maxSize = max;
+        return this;
+    }
+
+    public DeckOptimizer steps(int steps) {
+        this.steps = steps;
+        return this;
+    }
+
+    // Neighbours proposed and simulated together each step
+    public DeckOptimizer neighbours(int neighbours) {
+        this.neighbours = Math.max(1, neighbours);
+        return this;
+    }
+
+    public DeckOptimizer startTemperature(double temperature) {
+        this.startTemperature = temperature;
+        return this;
+    }
+
+    // Trials, seed, threads and sampling for every candidate; the seed also drives the search.
+    // Stopping rules are ignored: every candidate runs the same trials on the same streams.
+    public DeckOptimizer simulateWith(RunSettings run) {
+        this.run = run;
+        return this;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public int stepsDone() {
+        return stepsDone;
+    }
+
+    public int totalSteps() {
+        return steps;
+    }
+
+    // Objective of the best list so far, NaN before the start list is simulated
+    public double bestValue() {
+        return bestValue;
+    }
+
+    // Anneals from `start`, which is first brought within the pool's copy limits and the size range
+    public Result optimize(List<String> start) {
+        if (run.sampling != HandSampler.Sampling.PLAIN)
+            throw new IllegalArgumentException("The optimizer draws hands by slot, which needs plain sampling");
+        int[] counts = new int[pool.size()];
+        List<String> order = new ArrayList<>();
+        Map<String, Integer> index = new HashMap<>();
+        for (int c = 0; c < pool.size(); c++)
+            index.put(pool.get(c).name, c);
+        for (String name : start) {
+            Integer c = index.get(name);
+            if (c != null && counts[c] < pool.get(c).max) {
+                counts[c]++;
+                order.add(name);
+            }
+        }
+        Deck current = new Deck(counts, new Slots(order)).fitted();
+
+        SplittableRandom random = new SplittableRandom(run.seed);
+        int parallel = Math.min(neighbours, run.threads);
+        ExecutorService executor = Executors.newFixedThreadPool(parallel);
+        int runThreads = Math.max(1, run.threads / parallel);
+        try {
+            double currentValue = evaluate(List.of(current), executor, runThreads)[0];
+            Result result = new Result();
+            result.startDeck = current.slots.cards;
+            result.startValue = currentValue;
+            Deck best = current;
+            bestValue = currentValue;
+
+            double temperature = startTemperature;
+            double cooling = 1.0;
+            int step = 0;
+            for (; step < steps && !cancelled; step++) {
+                List<Deck> proposals = new ArrayList<>();
+                for (int k = 0; k < neighbours; k++) {
+                    Deck next = current.neighbour(random);
+                    if (next != null)
+                        proposals.add(next);
+                }
+                if (proposals.isEmpty())
+                    break; // no legal move: the pool pins every count
+                double[] values = evaluate(proposals, executor, runThreads);
+
+                if (step == 0 && temperature <= 0) {
+                    // Start where a typical first move is accepted about half the time
+                    double spread = 0;
+                    for (double v : values)
+                        spread += Math.abs(v - currentValue);
+                    temperature = Math.max(1e-9, spread / values.length / Math.log(2));
+                }
+                if (step == 0)
+                    cooling = Math.pow(0.01, 1.0 / Math.max(1, steps - 1)); // down to 1% at the last step
+
+                int pick = 0;
+                for (int k = 1; k < values.length; k++) {
+                    if (values[k] > values[pick])
+                        pick = k;
+                }
+                double delta = values[pick] - currentValue;
+                if (delta >= 0 || random.nextDouble() < Math.exp(delta / temperature)) {
+                    current = proposals.get(pick);
+                    currentValue = values[pick];
+                    if (currentValue > bestValue) {
+                        best = current;
+                        bestValue = currentValue;
+                    }
+                }
+                temperature *= cooling;
+                stepsDone = step + 1;
+            }
+
+            result.deck = best.slots.cards;
+            result.value = bestValue;
+            result.steps = step;
+            synchronized (evaluated) {
+                result.evaluated = evaluated.size();
+            }
+            return result;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // Objective of each deck, simulating the ones not seen before in parallel
+    private double[] evaluate(List<Deck> decks, ExecutorService executor, int runThreads) {
+        double[] values = new double[decks.size()];
+        List<Future<Double>> pending = new ArrayList<>();
+        for (Deck deck : decks) {
+            pending.add(executor.submit(() -> {
+                String key = Arrays.toString(deck.counts);
+                synchronized (evaluated) {
+                    Double known = evaluated.get(key);
+                    if (known != null)
+                        return known;
+                }
+                CompiledDeck compiled = CompiledDeck.compile(deck.slots.cards, cardInfos, weightsFirst, weightsSecond,
+                        combos);
+                RunSettings settings = new RunSettings().trials(run.trials).seed(run.seed)
+                        .threads(runThreads).slots(deck.slots.ids);
+                double value = objective.of(SimulationEngine.run(compiled, goingSecond, patterns, settings));
+                synchronized (evaluated) {
+                    evaluated.putIfAbsent(key, value);
+                    return evaluated.get(key);
+                }
+            }));
+        }
+        try {
+            for (int i = 0; i < values.length; i++)
+                values[i] = pending.get(i).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while simulating candidates", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Simulating a candidate failed", e.getCause());
+        }
+        return values;
+    }
+
+    // Card counts plus the slots that keep neighbouring lists drawing alike
+    private class Deck {
+        final int[] counts;
+        final Slots slots;
+
+        Deck(int[] counts, Slots slots) {
+            this.counts = counts;
+            this.slots = slots;
+        }
+
+        // Raises counts to their minimums and the size into range, filling from the pool in order
+        Deck fitted() {
+            int[] c = counts.clone();
+            Slots o = slots;
+            for (int i = 0; i < pool.size(); i++) {
+                while (c[i] < pool.get(i).min) {
+                    c[i]++;
+                    o = o.withChange(null, pool.get(i).name);
+                }
+            }
+            for (int i = 0; o.size() < minSize && i < pool.size(); i++) {
+                while (o.size() < minSize && c[i] < pool.get(i).max) {
+                    c[i]++;
+                    o = o.withChange(null, pool.get(i).name);
+                }
+            }
+            for (int i = pool.size() - 1; o.size() > maxSize && i >= 0; i--) {
+                while (o.size() > maxSize && c[i] > pool.get(i).min) {
+                    c[i]--;
+                    o = o.withChange(pool.get(i).name, null);
+                }
+            }
+            if (o.size() < minSize || o.size() > maxSize)
+                throw new IllegalArgumentException("The pool's copy limits cannot make a deck of "
+                        + minSize + "-" + maxSize + " cards");
+            return new Deck(c, o);
+        }
+
+        // A random legal swap, add or removal of one copy, or null if none was found
+        Deck neighbour(SplittableRandom random) {
+            for (int attempt = 0; attempt < 100; attempt++) {
+                int move = random.nextInt(3);
+                int out = random.nextInt(pool.size());
+                int in = random.nextInt(pool.size());
+                boolean canRemove = counts[out] > pool.get(out).min;
+                boolean canAdd = counts[in] < pool.get(in).max;
+                if (move == 0 && in != out && canRemove && canAdd)
+                    return replace(out, in);
+                if (move == 1 && slots.size() < maxSize && canAdd)
+                    return replace(-1, in);
+                if (move == 2 && slots.size() > minSize && canRemove)
+                    return replace(out, -1);
+            }
+            return null;
+        }
+
+        // One copy of `out` swapped for `in`; either may be -1 for a plain add or removal
+        private Deck replace(int out, int in) {
+            int[] c = counts.clone();
+            Slots o = slots.withChange(out >= 0 ? pool.get(out).name : null, in >= 0 ? pool.get(in).name : null);
+            if (out >= 0)
+                c[out]--;
+            if (in >= 0)
+                c[in]++;
+            return new Deck(c, o);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+// Exact opening-hand statistics, no sampling.
+//
+// Every distinct hand is enumerated once as a multiset over the deck's card classes
+// (see CompiledDeck.cardClasses) and weighted by its multivariate hypergeometric
+// probability  prod_k C(copies_k, drawn_k) / C(deckSize, handSize).
+// A 40-card deck has a few thousand such hands at most, so this is usually quicker
+// than a large Monte Carlo run and has no noise at all.
+public class ExactEvaluator {
+    private final CompiledDeck deck;
+    private final boolean goingSecond;
+    private final List<HandPattern> patterns;
+    private final CompiledPatterns compiledPatterns;
+    private final int handSize;
+    private final int[][] members;     // class id -> its cards in deck order
+    private final int[] capacityFrom;  // cards left in classes k.. (for pruning)
+    private final int[] tracked;
+
+    // Scratch and totals for the enumeration
+    private final int[] hand;
+    private final int[] scratch;
+    private final boolean[] matched;
+    private final int[] seen;
+    private int stamp = 0;
+    private final double totalHands;
+    private long distinctHands = 0;
+    private double mean = 0, secondMoment = 0;
+    private double bestScore = Double.NEGATIVE_INFINITY, worstScore = Double.POSITIVE_INFINITY;
+    private int[] bestHand, worstHand;
+    private final double[] roleTotals;
+    private final double[] patternProbabilities;
+    private final NavigableMap<Double, Double> distribution = new TreeMap<>();
+
+    private ExactEvaluator(CompiledDeck deck, boolean goingSecond, List<HandPattern> patterns) {
+        this.deck = deck;
+        this.goingSecond = goingSecond;
+        this.patterns = patterns;
+        this.compiledPatterns = new CompiledPatterns(deck, patterns);
+        this.handSize = goingSecond ? 6 : 5; // 6 cards for going second, 5 for going first
+        if (handSize > deck.size())
+            throw new IllegalArgumentException("Deck has " + deck.size() + " cards, cannot draw " + handSize);
+
+        int[] classOf = deck.cardClasses(patterns);
+        int classCount = Arrays.stream(classOf).max().orElse(-1) + 1;
+        int[] copies = new int[classCount];
+        for (int card : deck.cards)
+            copies[classOf[card]]++;
+        members = new int[classCount][];
+        for (int k = 0; k < classCount; k++)
+            members[k] = new int[copies[k]];
+        int[] filled = new int[classCount];
+        for (int card : deck.cards) {
+            int k = classOf[card];
+            members[k][filled[k]++] = card;
+        }
+        capacityFrom = new int[classCount + 1];
+        for (int k = classCount - 1; k >= 0; k--)
+            capacityFrom[k] = capacityFrom[k + 1] + copies[k];
+
+        tracked = deck.trackedRoleIds();
+        hand = new int[handSize];
+        scratch = compiledPatterns.newScratch();
+        matched = new boolean[patterns.size()];
+        seen = new int[deck.cardCount()];
+        totalHands = binomial(deck.size(), handSize);
+        roleTotals = new double[tracked.length];
+        patternProbabilities = new double[patterns.size()];
+    }
+
+    public static SimulationResult evaluate(CompiledDeck deck, boolean goingSecond, List<HandPattern> patterns) {
+        ExactEvaluator exact = new ExactEvaluator(deck, goingSecond, patterns);
+        exact.enumerate(0, 0, 1.0);
+        return exact.toResult();
+    }
+
+    // Choose how many cards of class k go into hand[filled..), then recurse on class k + 1
+    private void enumerate(int k, int filled, double ways) {
+        int remaining = handSize - filled;
+        if (remaining == 0) {
+            accept(ways / totalHands);
+            return;
+        }
+        if (k == members.length || capacityFrom[k] < remaining)
+            return;
+        int[] cards = members[k];
+        int most = Math.min(cards.length, remaining);
+        for (int c = 0; c <= most; c++) {
+            if (c > 0)
+                hand[filled + c - 1] = cards[c - 1];
+            enumerate(k + 1, filled + c, ways * binomial(cards.length, c));
+        }
+    }
+
+    private void accept(double probability) {
+        distinctHands++;
+        double score = SimulationEngine.evaluateHand(deck, hand, handSize, goingSecond, compiledPatterns,
+                scratch, matched);
+        mean += probability * score;
+        secondMoment += probability * score * score;
+        // Round off float noise so equal sums of weights share one bucket
+        distribution.merge(Math.round(score * 1e9) / 1e9, probability, Double::sum);
+
+        if (score > bestScore) {
+            bestScore = score;
+            bestHand = hand.clone();
+        }
+        if (score < worstScore) {
+            worstScore = score;
+            worstHand = hand.clone();
+        }
+
+        // Each distinct card counts once towards its role
+        stamp++;
+        for (int i = 0; i < handSize; i++) {
+            int card = hand[i];
+            if (seen[card] == stamp)
+                continue;
+            seen[card] = stamp;
+            for (int r = 0; r < tracked.length; r++) {
+                if (deck.roleOf[card] == tracked[r])
+                    roleTotals[r] += probability;
+            }
+        }
+
+        for (int p = 0; p < matched.length; p++) {
+            if (matched[p])
+                patternProbabilities[p] += probability;
+        }
+    }
+
+    private SimulationResult toResult() {
+        double variance = Math.max(0.0, secondMoment - mean * mean);
+        double median = ScoreStats.median(distribution);
+
+        Map<HandPattern, Double> patternRates = new LinkedHashMap<>(); // in pattern order
+        for (int p = 0; p < patterns.size(); p++)
+            patternRates.put(patterns.get(p), patternProbabilities[p]);
+
+        return new SimulationResult(distinctHands, mean, median, variance, Math.sqrt(variance),
+                bestScore, deck.namesOf(bestHand, handSize),
+                SimulationEngine.cardsWithRole(deck, bestHand, handSize, tracked[0]),
+                SimulationEngine.cardsWithRole(deck, bestHand, handSize, tracked[1]),
+                SimulationEngine.cardsWithRole(deck, bestHand, handSize, tracked[2]),
+                SimulationEngine.cardsWithRole(deck, bestHand, handSize, tracked[3]),
+                worstScore, deck.namesOf(worstHand, handSize),
+                roleTotals[0], roleTotals[1], roleTotals[2], roleTotals[3],
+                patternRates, distribution);
+    }
+
+    static double binomial(int n, int k) {
+        if (k < 0 || k > n)
+            return 0.0;
+        k = Math.min(k, n - k);
+        double result = 1.0;
+        for (int i = 1; i <= k; i++)
+            result = result * (n - k + i) / i;
+        return result;
+    }
+}
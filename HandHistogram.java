@@ -0,0 +1,240 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+// Every distinct hand a sampled run drew, with how many times it was drawn, so the run can
+// be re-scored for new card weights or pattern values without drawing again (see rescore).
+//
+// A hand's score depends only on which cards it holds, their weights and the values of the
+// patterns it matches, and which patterns it matches does not depend on weights or values at
+// all. So the drawn hands, counted as multisets, are a sufficient statistic for every score
+// figure of the run: re-scoring them gives the average, variance, median, best/worst hands
+// and TopHands lists that a rerun on the same seed would give. The one exception is
+// antithetic sampling, whose pairs are built from the weights; its histogram is still a fair
+// sample.
+//
+// Hands are keyed by the sum of a random 64-bit code per card, which needs no sorting, and
+// each entry keeps its hand sorted and packed, 6 bits per card id, for re-scoring. Two
+// different hands share a key with probability around 2^-64. Entries are {key, hand, count}
+// in one array so a lookup touches one cache line, and a block's table starts big enough
+// for a whole block so it never rehashes. A run that draws more than MAX_HANDS distinct
+// hands stops recording and cannot be re-scored. It stays out of the partial results of a
+// running simulation, which would have to copy the whole table every refresh.
+public class HandHistogram implements StatCollector {
+    static final int MAX_HANDS = 1 << 21;
+    static final int BITS_PER_CARD = 6;
+    private static final int BLOCK_CAPACITY = Integer.highestOneBit(BlockRun.BLOCK_SIZE) * 2;
+
+    private final CompiledDeck deck;
+    private final long[] codes; // card id -> random code
+    private long[] table;       // {key, packed hand, count} per slot; key 0 is empty
+    private int capacity;       // slots
+    private int size = 0;
+    private final int[] sorted = new int[10];
+    private int handSize = 0;
+    boolean overflowed;
+
+    public HandHistogram(CompiledDeck deck) {
+        this.deck = deck;
+        this.codes = new long[deck.cardCount()];
+        SplittableRandom random = new SplittableRandom(0x5EEDL);
+        for (int card = 0; card < codes.length; card++)
+            codes[card] = random.nextLong();
+        this.overflowed = deck.cardCount() > 1 << BITS_PER_CARD;
+        allocate(16);
+    }
+
+    private HandHistogram(CompiledDeck deck, long[] codes, boolean overflowed) {
+        this.deck = deck;
+        this.codes = codes;
+        this.overflowed = overflowed;
+        allocate(BLOCK_CAPACITY);
+    }
+
+    private void allocate(int slots) {
+        capacity = slots;
+        table = new long[slots * 3];
+    }
+
+    @Override
+    public StatCollector newInstance() {
+        return new HandHistogram(deck, codes, overflowed);
+    }
+
+    @Override
+    public void accept(Trial trial) {
+        if (overflowed)
+            return;
+        handSize = trial.handSize;
+        long sum = 0;
+        for (int i = 0; i < trial.handSize; i++)
+            sum += codes[trial.hand[i]];
+        long key = nonZero(sum);
+        int at = slotOf(key) * 3;
+        if (table[at] == key)
+            table[at + 2]++;
+        else
+            insert(key, pack(trial.hand, trial.handSize, sorted), 1);
+    }
+
+    @Override
+    public void merge(StatCollector later) {
+        HandHistogram other = (HandHistogram) later;
+        if (other.handSize > 0)
+            handSize = other.handSize;
+        overflowed |= other.overflowed;
+        long[] entries = other.table;
+        for (int from = 0; from < entries.length && !overflowed; from += 3) {
+            long key = entries[from];
+            if (key == 0)
+                continue;
+            int at = slotOf(key) * 3;
+            if (table[at] == key)
+                table[at + 2] += entries[from + 2];
+            else
+                insert(key, entries[from + 1], entries[from + 2]);
+        }
+    }
+
+    // Copying up to MAX_HANDS entries every refresh would hold up the workers
+    @Override
+    public boolean inSnapshots() {
+        return false;
+    }
+
+    public int distinctHands() {
+        return size;
+    }
+
+    // True if the run's score figures can be recomputed from this histogram
+    public boolean canRescore() {
+        return !overflowed && size > 0;
+    }
+
+    // The result of the same run scored with the weights of `reweighted` and the values of
+    // `patterns`. The deck must hold the same cards as the one that was run, and the patterns
+    // must ask for the same cards and roles; only the weights and values may differ. Pattern
+    // matches and role averages carry over unchanged.
+    public SimulationResult rescore(SimulationResult result, CompiledDeck reweighted, List<HandPattern> patterns,
+                                    boolean goingSecond) {
+        if (!canRescore())
+            throw new IllegalStateException("This run drew too many distinct hands to re-score");
+        if (!Arrays.equals(reweighted.names, deck.names) || !Arrays.equals(reweighted.cards, deck.cards))
+            throw new IllegalArgumentException("Re-scoring needs the deck that was simulated");
+
+        StatCollectors.ScoreMoments scores = new StatCollectors.ScoreMoments(
+                SimulationEngine.scoreRange(reweighted, handSize, goingSecond, patterns));
+        StatCollectors.BestWorst bestWorst = new StatCollectors.BestWorst(reweighted, reweighted.trackedRoleIds());
+        TopHands oldTop = result.collector(TopHands.class);
+        TopHands top = oldTop != null ? oldTop.emptyCopy() : null;
+        CardImpact oldImpact = result.collector(CardImpact.class);
+        CardImpact impact = oldImpact != null ? oldImpact.emptyCopy() : null;
+        CompiledPatterns compiled = new CompiledPatterns(reweighted, patterns);
+        Trial trial = new Trial(reweighted, goingSecond, handSize, patterns.size());
+        int[] scratch = compiled.newScratch();
+        for (int at = 0; at < table.length; at += 3) {
+            if (table[at] == 0)
+                continue;
+            unpack(table[at + 1], trial.hand, handSize);
+            trial.score = SimulationEngine.evaluateHand(reweighted, trial.hand, handSize, goingSecond, compiled,
+                    scratch, trial.matched);
+            scores.scores.add(trial.score, table[at + 2]);
+            bestWorst.accept(trial);
+            if (top != null)
+                top.add(trial.hand, handSize, trial.score, table[at + 2]);
+            if (impact != null) {
+                trial.findDistinct();
+                trial.matchMask = 0;
+                for (int p = 0; p < trial.matched.length && p < 64; p++) {
+                    if (trial.matched[p])
+                        trial.matchMask |= 1L << p;
+                }
+                impact.add(trial, table[at + 2]);
+            }
+        }
+
+        SimulationResult rescored = result.copy();
+        scores.report(rescored);
+        bestWorst.report(rescored);
+        rescored.collectors = new ArrayList<>();
+        for (StatCollector collector : result.collectors) {
+            if (collector instanceof StatCollectors.ScoreMoments)
+                rescored.collectors.add(scores);
+            else if (collector instanceof StatCollectors.BestWorst)
+                rescored.collectors.add(bestWorst);
+            else if (collector == oldTop)
+                rescored.collectors.add(top);
+            else if (collector == oldImpact)
+                rescored.collectors.add(impact);
+            else
+                rescored.collectors.add(collector);
+        }
+        rescored.rescored = true;
+        return rescored;
+    }
+
+    // Slot holding the key, or the empty slot where it would go
+    private int slotOf(long key) {
+        int mask = capacity - 1;
+        int slot = (int) (key * 0x9E3779B97F4A7C15L >>> 40) & mask;
+        while (table[slot * 3] != 0 && table[slot * 3] != key)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private void insert(long key, long hand, long count) {
+        if (size >= MAX_HANDS) {
+            overflowed = true;
+            return;
+        }
+        if ((size + 1) * 2 > capacity)
+            grow();
+        int at = slotOf(key) * 3;
+        table[at] = key;
+        table[at + 1] = hand;
+        table[at + 2] = count;
+        size++;
+    }
+
+    private void grow() {
+        long[] old = table;
+        allocate(capacity * 2);
+        for (int from = 0; from < old.length; from += 3) {
+            if (old[from] == 0)
+                continue;
+            int at = slotOf(old[from]) * 3;
+            table[at] = old[from];
+            table[at + 1] = old[from + 1];
+            table[at + 2] = old[from + 2];
+        }
+    }
+
+    private static long nonZero(long key) {
+        return key != 0 ? key : 1;
+    }
+
+    // The hand sorted by card id, 6 bits per card; sorted is scratch of at least handSize
+    static long pack(int[] hand, int handSize, int[] sorted) {
+        for (int i = 0; i < handSize; i++) {
+            int card = hand[i];
+            int j = i - 1;
+            while (j >= 0 && sorted[j] > card) {
+                sorted[j + 1] = sorted[j];
+                j--;
+            }
+            sorted[j + 1] = card;
+        }
+        long packed = 0;
+        for (int i = 0; i < handSize; i++)
+            packed = packed << BITS_PER_CARD | sorted[i];
+        return packed;
+    }
+
+    static void unpack(long packed, int[] hand, int handSize) {
+        for (int i = handSize - 1; i >= 0; i--) {
+            hand[i] = (int) (packed & ((1 << BITS_PER_CARD) - 1));
+            packed >>>= BITS_PER_CARD;
+        }
+    }
+}
@@ -29,6 +29,11 @@ public class HandPattern {
         return sb.toString();
     }
 
+    // Independent copy, so a running simulation is not affected by later edits
+    public HandPattern copy() {
+        return new HandPattern(new ArrayList<>(requiredCardNames), new HashMap<>(requiredRoles), handValue);
+    }
+
     public double getHandValue() {
         return handValue;
     }
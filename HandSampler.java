@@ -0,0 +1,126 @@
+import java.util.random.RandomGenerator;
+
+// Draws opening hands without replacement using a partial Fisher–Yates shuffle.
+// Only the first handSize slots of a private copy of the deck are shuffled, and the
+// swaps are undone after each draw, so every trial starts from the same deck order
+// and costs handSize random numbers instead of a full shuffle.
+// One sampler per worker thread: it is not safe to share.
+//
+// drawBySlot is the draw for comparing decks of different sizes (see RunSettings.slots).
+public class HandSampler {
+    // How the hands of a run are drawn. All three give unbiased averages.
+    public enum Sampling {
+        PLAIN("Plain"),
+        STRATIFIED("Stratified by starter count"),
+        ANTITHETIC("Antithetic pairs");
+
+        final String label;
+
+        Sampling(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    private final int[] deck;
+    private final int[] swaps;
+    private final double[] uniforms;
+    private final long[] keys;
+
+    public HandSampler(int[] cards, int maxHandSize) {
+        if (maxHandSize > cards.length)
+            throw new IllegalArgumentException("Deck has " + cards.length + " cards, cannot draw " + maxHandSize);
+        this.deck = cards.clone();
+        this.swaps = new int[maxHandSize];
+        this.uniforms = new double[maxHandSize];
+        this.keys = new long[maxHandSize];
+    }
+
+    // Fill hand[0..handSize) with a uniformly random draw from the deck
+    public void draw(RandomGenerator random, int handSize, int[] hand) {
+        draw(random, handSize, hand, 0);
+    }
+
+    // Fill hand[offset..offset + count) with a uniformly random draw from the deck
+    public void draw(RandomGenerator random, int count, int[] hand, int offset) {
+        int n = deck.length;
+        for (int i = 0; i < count; i++) {
+            int j = i + random.nextInt(n - i);
+            swaps[i] = j;
+            hand[offset + i] = swap(i, j);
+        }
+        undo(count);
+    }
+
+    // Fill hand[0..handSize) with the cards of the handSize slots holding the smallest keys,
+    // where a slot's key is a hash of its id and one number taken from the stream per hand.
+    // Every handSize-subset of the slots is equally likely, and unlike draw the hand does not
+    // depend on how many slots there are: on the same stream, a deck with a slot added,
+    // removed or refilled draws the same hand unless that slot's key is among the smallest.
+    // slotIds[i] is the id of deck position i.
+    public void drawBySlot(RandomGenerator random, int handSize, int[] hand, int[] slotIds) {
+        long seed = random.nextLong();
+        int size = 0;
+        for (int i = 0; i < deck.length; i++) {
+            long key = mix(seed + slotIds[i] * 0x9E3779B97F4A7C15L) >>> 1;
+            if (size == handSize && key >= keys[size - 1])
+                continue;
+            int j = size < handSize ? size++ : handSize - 1;
+            for (; j > 0 && keys[j - 1] > key; j--) {
+                keys[j] = keys[j - 1];
+                hand[j] = hand[j - 1];
+            }
+            keys[j] = key;
+            hand[j] = deck[i];
+        }
+    }
+
+    // SplitMix64's finalizer, the same one SplittableRandom uses
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // Two hands from the same uniforms, the second taking every pick from the other end of
+    // what is left (u -> 1 - u). Each hand on its own is a uniform draw, so averaging the pair
+    // stays unbiased; built over a deck sorted by weight, a strong hand is paired with a weak
+    // one and the pair average varies much less than two independent hands.
+    public void drawAntithetic(RandomGenerator random, int handSize, int[] hand, int[] mirror) {
+        int n = deck.length;
+        for (int i = 0; i < handSize; i++) {
+            uniforms[i] = random.nextDouble();
+            int j = i + (int) (uniforms[i] * (n - i));
+            swaps[i] = j;
+            hand[i] = swap(i, j);
+        }
+        undo(handSize);
+        for (int i = 0; i < handSize; i++) {
+            int j = n - 1 - (int) (uniforms[i] * (n - i));
+            swaps[i] = j;
+            mirror[i] = swap(i, j);
+        }
+        undo(handSize);
+    }
+
+    private int swap(int i, int j) {
+        int card = deck[j];
+        deck[j] = deck[i];
+        deck[i] = card;
+        return card;
+    }
+
+    // Undo in reverse so the deck is back in its original order
+    private void undo(int count) {
+        for (int i = count - 1; i >= 0; i--)
+            swap(i, swaps[i]);
+    }
+
+    public int deckSize() {
+        return deck.length;
+    }
+}
@@ -13,15 +13,45 @@ public class HandSimulator {
     private static final Map<String, Double> weightsSecond = new HashMap<>();
     private static List<String> deck = new ArrayList<>();
     private static final List<HandPattern> handPatterns = new ArrayList<>();
+    // Searches from the loaded config; they have no tab and are saved back as loaded
+    private static final Map<String, List<String>> searches = new LinkedHashMap<>();
+    private static final List<ComboRule> combos = new ArrayList<>();
+
+    // Distinct hands listed at each end of a sampled run's scores (see TopHands)
+    private static final int TOP_HANDS = 10;
+
+    // Deck compiled against the current roles/weights; dropped whenever either changes
+    private static CompiledDeck compiledDeck;
+
+    // The last sampled run, kept so weight and pattern value edits can re-score it (see rescoreLastRun)
+    private static LastRun lastRun;
 
     // Table models for each config tab
     private static CardRolesTableModel cardRolesTableModel;
     private static WeightsTableModel weightsTableModel;
     private static HandPatternsTableModel handPatternsTableModel;
+    private static ComboRulesTableModel comboRulesTableModel;
+    private static CardImpactTableModel cardImpactTableModel;
 
     // UI Components
     private static JTextArea outputPane;
+    private static ScoreChart scoreChart;
+    private static SimulationResult shownResult;
     private static JTextField trialsField;
+    private static JTextField seedField;
+    private static JTextField threadsField;
+    private static JTextField turnsField;
+    private static JCheckBox exactCheckBox;
+    private static JComboBox<String> stopWhenDropdown;
+    private static JComboBox<HandSampler.Sampling> samplingDropdown;
+    private static JTextField targetField;
+    private static JTextField brickField;
+    private static JButton runButton;
+    private static JButton stopButton;
+    private static JButton sensitivityButton;
+    private static JProgressBar progressBar;
+    private static JLabel statusLabel;
+    private static SimulationWorker currentWorker;
     private static JComboBox<String> turnPreferenceDropdown;
 
     public static void main(String[] args) {
@@ -93,24 +123,95 @@ public class HandSimulator {
         handPatternsPanel.add(handPatternsButtons, BorderLayout.SOUTH);
         tabbedPane.addTab("Hand Patterns", handPatternsPanel);
 
+        // Combo Rules tab
+        comboRulesTableModel = new ComboRulesTableModel();
+        JTable comboRulesTable = new JTable(comboRulesTableModel);
+        comboRulesTable.setToolTipText("Card names, or @role for a role; the bonus is paid when the hand holds every "
+                + "required item and no forbidden one");
+        JScrollPane comboRulesScroll = new JScrollPane(comboRulesTable);
+        JPanel comboRulesPanel = new JPanel(new BorderLayout());
+        comboRulesPanel.add(comboRulesScroll, BorderLayout.CENTER);
+        JPanel comboRulesButtons = new JPanel();
+        JButton addComboRow = new JButton("Add Row");
+        JButton removeComboRow = new JButton("Remove Selected");
+        comboRulesButtons.add(addComboRow);
+        comboRulesButtons.add(removeComboRow);
+        comboRulesPanel.add(comboRulesButtons, BorderLayout.SOUTH);
+        tabbedPane.addTab("Combo Rules", comboRulesPanel);
+
+        cardRolesTableModel.addTableModelListener(e -> compiledDeck = null);
+        weightsTableModel.addTableModelListener(e -> compiledDeck = null);
+        weightsTableModel.addTableModelListener(e -> rescoreLastRun());
+        handPatternsTableModel.addTableModelListener(e -> rescoreLastRun());
+        comboRulesTableModel.addTableModelListener(e -> compiledDeck = null);
+        comboRulesTableModel.addTableModelListener(e -> rescoreLastRun());
+
         frame.add(tabbedPane, BorderLayout.WEST);
 
         // Right panel: simulation parameters and output
         JPanel rightPanel = new JPanel(new BorderLayout());
 
-        JPanel simParams = new JPanel(new GridLayout(5, 2, 10, 10));
+        JPanel simParams = new JPanel(new GridLayout(13, 2, 10, 10));
         simParams.setBorder(BorderFactory.createTitledBorder("Simulation Parameters"));
 
-        simParams.add(new JLabel("Number of Trials:"));
+        simParams.add(new JLabel("Number of Trials (max):"));
         trialsField = new JTextField("100000");
         simParams.add(trialsField);
 
+        simParams.add(new JLabel("Stop When:"));
+        stopWhenDropdown = new JComboBox<>(StoppingRule.CHOICES);
+        simParams.add(stopWhenDropdown);
+
+        simParams.add(new JLabel("Target:"));
+        targetField = new JTextField("");
+        simParams.add(targetField);
+
         simParams.add(new JLabel("Turn Preference:"));
-        turnPreferenceDropdown = new JComboBox<>(new String[] { "Going First", "Going Second" });
+        turnPreferenceDropdown = new JComboBox<>(new String[] { "Going First", "Going Second", "Both Turns" });
         simParams.add(turnPreferenceDropdown);
 
-        JButton runButton = new JButton("Run Simulation");
+        simParams.add(new JLabel("Turns:"));
+        turnsField = new JTextField("1");
+        turnsField.setToolTipText("Above 1, keeps drawing a card per turn and resolves the config's searches");
+        simParams.add(turnsField);
+
+        simParams.add(new JLabel("Seed (blank = random):"));
+        seedField = new JTextField("");
+        simParams.add(seedField);
+
+        simParams.add(new JLabel("Threads:"));
+        threadsField = new JTextField(String.valueOf(SimulationEngine.defaultThreads()));
+        simParams.add(threadsField);
+
+        simParams.add(new JLabel("Sampling:"));
+        samplingDropdown = new JComboBox<>(HandSampler.Sampling.values());
+        simParams.add(samplingDropdown);
+
+        simParams.add(new JLabel("Brick Below (blank = none):"));
+        brickField = new JTextField("");
+        brickField.setToolTipText("Reports the rate of hands scoring below this and marks them on the chart");
+        simParams.add(brickField);
+
+        simParams.add(new JLabel("Exact Evaluation:"));
+        exactCheckBox = new JCheckBox("Enumerate every hand (no sampling)");
+        simParams.add(exactCheckBox);
+
+        runButton = new JButton("Run Simulation");
         simParams.add(runButton);
+        stopButton = new JButton("Stop");
+        stopButton.setEnabled(false);
+        simParams.add(stopButton);
+
+        sensitivityButton = new JButton("Card Sensitivity");
+        sensitivityButton.setToolTipText("Simulate adding, removing or blanking one copy of each card");
+        simParams.add(sensitivityButton);
+        simParams.add(new JLabel(""));
+
+        progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+        simParams.add(progressBar);
+        statusLabel = new JLabel("Idle");
+        simParams.add(statusLabel);
 
         rightPanel.add(simParams, BorderLayout.NORTH);
 
@@ -118,7 +219,21 @@ public class HandSimulator {
         outputPane.setEditable(false);
         JScrollPane outputScroll = new JScrollPane(outputPane);
         outputScroll.setBorder(BorderFactory.createTitledBorder("Simulation Output"));
-        rightPanel.add(outputScroll, BorderLayout.CENTER);
+        scoreChart = new ScoreChart();
+        JPanel chartPanel = new JPanel(new BorderLayout());
+        chartPanel.setBorder(BorderFactory.createTitledBorder("Score Distribution"));
+        chartPanel.add(scoreChart, BorderLayout.CENTER);
+        // Card impact is filled in by sampled runs of opening hands (see CardImpact)
+        cardImpactTableModel = new CardImpactTableModel();
+        JTable cardImpactTable = new JTable(cardImpactTableModel);
+        cardImpactTable.setAutoCreateRowSorter(true);
+        cardImpactTable.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
+        JTabbedPane outputTabs = new JTabbedPane();
+        outputTabs.addTab("Report", outputScroll);
+        outputTabs.addTab("Card Impact", new JScrollPane(cardImpactTable));
+        JSplitPane outputSplit = new JSplitPane(JSplitPane.VERTICAL_SPLIT, outputTabs, chartPanel);
+        outputSplit.setResizeWeight(0.7);
+        rightPanel.add(outputSplit, BorderLayout.CENTER);
 
         frame.add(rightPanel, BorderLayout.CENTER);
 
@@ -129,6 +244,7 @@ public class HandSimulator {
                 try {
                     YDKImporter importer = new YDKImporter("src/cards.csv");
                     deck = importer.getCardNamesFromYDK(file.getAbsolutePath());
+                    compiledDeck = null;
                     showMessage("Deck loaded: " + deck.size() + " cards.");
                 } catch (IOException ex) {
                     showError("Failed to read deck file");
@@ -196,7 +312,27 @@ public class HandSimulator {
             }
         });
 
-        runButton.addActionListener(e -> runSimulationAction());
+        addComboRow.addActionListener(e -> {
+            comboRulesTableModel.addRow(new ComboRule(List.of(), List.of(), 1.0));
+        });
+
+        removeComboRow.addActionListener(e -> {
+            int selected = comboRulesTable.getSelectedRow();
+            if (selected >= 0) {
+                comboRulesTableModel.removeRow(selected);
+            }
+        });
+
+        runButton.addActionListener(e -> runSimulationAction(false));
+        brickField.addActionListener(e -> {
+            if (shownResult != null)
+                showResult(shownResult);
+        });
+        sensitivityButton.addActionListener(e -> runSimulationAction(true));
+        stopButton.addActionListener(e -> {
+            if (currentWorker != null)
+                currentWorker.stop();
+        });
 
         frame.setVisible(true);
     }
@@ -223,52 +359,19 @@ public class HandSimulator {
 
     // Parse the whole config file into the data structures
     private static void parseConfigFile(String text) {
+        SimulatorConfig config = SimulatorConfig.parse(text);
         cardInfos.clear();
+        cardInfos.putAll(config.cardInfos);
         weightsFirst.clear();
+        weightsFirst.putAll(config.weightsFirst);
         weightsSecond.clear();
+        weightsSecond.putAll(config.weightsSecond);
         handPatterns.clear();
-
-        Arrays.stream(text.split("\\R"))
-                .map(String::trim)
-                .filter(line -> !line.isEmpty() && !line.startsWith("#"))
-                .forEach(line -> {
-                    try {
-                        if (line.contains("=")) {
-                            String[] parts = line.split("=");
-                            if (parts.length < 2)
-                                return;
-                            String key = parts[0].trim();
-                            String val = parts[1].trim();
-                            if (val.contains(",") && (val.contains("handtrap") || val.contains("starter")
-                                    || val.contains("extender") || val.contains("soft garnet"))) {
-                                // Card Role line
-                                String[] roleParts = val.split(",");
-                                cardInfos.put(key, new CardRoles.CardInfo(roleParts[0].trim(),
-                                        Boolean.parseBoolean(roleParts[1].trim())));
-                            } else if (val.contains(",")) {
-                                // Weights line
-                                String[] weights = val.split(",");
-                                if (weights.length < 2)
-                                    return;
-                                weightsFirst.put(key, Double.parseDouble(weights[0].trim()));
-                                weightsSecond.put(key, Double.parseDouble(weights[1].trim()));
-                            }
-                        } else if (line.contains("|")) {
-                            // Hand pattern line: cards|roleCounts|weight
-                            String[] parts = line.split("\\|");
-                            List<String> cardsList = Arrays.asList(parts[0].split(","));
-                            Map<String, Integer> roleCounts = new HashMap<>();
-                            for (String rc : parts[1].split(",")) {
-                                String[] rolePair = rc.split(":");
-                                roleCounts.put(rolePair[0].trim(), Integer.parseInt(rolePair[1].trim()));
-                            }
-                            double weight = parts.length > 2 ? Double.parseDouble(parts[2].trim()) : 1.0;
-                            handPatterns.add(new HandPattern(cardsList, roleCounts, weight));
-                        }
-                    } catch (Exception e) {
-                        // Ignore malformed lines
-                    }
-                });
+        handPatterns.addAll(config.handPatterns);
+        searches.clear();
+        searches.putAll(config.searches);
+        combos.clear();
+        combos.addAll(config.combos);
     }
 
     // Refresh GUI tables from current data maps/lists
@@ -289,6 +392,8 @@ public class HandSimulator {
         weightsTableModel.setData(weightEntries);
         // Hand Patterns
         handPatternsTableModel.setData(handPatterns);
+        // Combo Rules
+        comboRulesTableModel.setData(combos);
     }
 
     // Build config file content from current GUI table data
@@ -332,32 +437,260 @@ public class HandSimulator {
             sb.append(cardsPart).append("|").append(roleCountsPart).append("|").append(hp.getHandValue()).append("\n");
         }
 
+        // Combo Rules
+        for (int i = 0; i < comboRulesTableModel.getRowCount(); i++)
+            sb.append(comboRulesTableModel.getRuleAt(i).line()).append("\n");
+
+        // Searches
+        for (Map.Entry<String, List<String>> entry : searches.entrySet())
+            sb.append(SimulatorConfig.searchLine(entry.getKey(), entry.getValue())).append("\n");
+
         return sb.toString();
     }
 
     // Run the simulation with current data from tables
-    private static void runSimulationAction() {
+    // With `sensitivity`, also runs every one-copy change of the deck (see CardSensitivity)
+    private static void runSimulationAction(boolean sensitivity) {
+        if (currentWorker != null && !currentWorker.isDone())
+            return;
         if (deck.isEmpty()) {
             showError("No deck loaded. Please select a .ydk deck file first.");
             return;
         }
-        int trials;
+        long trials;
         try {
-            trials = Integer.parseInt(trialsField.getText());
+            trials = Long.parseLong(trialsField.getText().trim());
             if (trials <= 0)
                 throw new NumberFormatException();
         } catch (NumberFormatException e) {
             showError("Invalid number of trials.");
             return;
         }
-        boolean goingSecond = turnPreferenceDropdown.getSelectedItem().equals("Going Second");
+        long seed;
+        int threads;
+        try {
+            String seedText = seedField.getText().trim();
+            seed = seedText.isEmpty() ? SimulationEngine.randomSeed() : Long.parseLong(seedText);
+        } catch (NumberFormatException e) {
+            showError("Seed must be a whole number.");
+            return;
+        }
+        try {
+            threads = Integer.parseInt(threadsField.getText().trim());
+            if (threads <= 0)
+                throw new NumberFormatException();
+        } catch (NumberFormatException e) {
+            showError("Invalid number of threads.");
+            return;
+        }
+        int turns;
+        try {
+            turns = Integer.parseInt(turnsField.getText().trim());
+            if (turns < 1 || turns > MultiTurn.MAX_TURNS)
+                throw new NumberFormatException();
+        } catch (NumberFormatException e) {
+            showError("Turns must be a whole number from 1 to " + MultiTurn.MAX_TURNS + ".");
+            return;
+        }
+        StoppingRule rule;
+        try {
+            int choice = stopWhenDropdown.getSelectedIndex();
+            rule = choice == 0 ? null : StoppingRule.fromChoice(choice, Double.parseDouble(targetField.getText().trim()));
+        } catch (IllegalArgumentException e) { // includes NumberFormatException
+            showError("Invalid stopping target.");
+            return;
+        }
+        // Both turns is a going-second run that also scores the first five cards going first
+        boolean bothTurns = turnPreferenceDropdown.getSelectedItem().equals("Both Turns");
+        boolean goingSecond = bothTurns || turnPreferenceDropdown.getSelectedItem().equals("Going Second");
+        HandSampler.Sampling sampling = (HandSampler.Sampling) samplingDropdown.getSelectedItem();
 
         // Sync GUI data back to in-memory structures before running
         syncTablesToData();
+        if (compiledDeck == null) {
+            try {
+                compiledDeck = CompiledDeck.compile(deck, cardInfos, weightsFirst, weightsSecond, combos);
+            } catch (IllegalArgumentException e) {
+                showError(e.getMessage());
+                return;
+            }
+        }
+
+        lastRun = null;
+
+        // The run works on its own copies so table edits cannot change it halfway
+        CompiledDeck runDeck = compiledDeck;
+        List<HandPattern> runPatterns = new ArrayList<>();
+        for (HandPattern hp : handPatterns)
+            runPatterns.add(hp.copy());
+
+        if (turns > 1 && (sensitivity || bothTurns || exactCheckBox.isSelected() || rule != null
+                || sampling != HandSampler.Sampling.PLAIN)) {
+            showError("A multi-turn run is a plain sampled run of one turn order with a fixed number of trials.");
+            return;
+        }
+        if (bothTurns && sampling == HandSampler.Sampling.STRATIFIED) {
+            showError("Both turns cannot use stratified sampling: it draws the starters first, so the "
+                    + "going-first hand would always drop a non-starter.");
+            return;
+        }
+        if (bothTurns && (sensitivity || exactCheckBox.isSelected())) {
+            showError("Both turns is a sampled run. Pick one turn for exact evaluation or card sensitivity.");
+            return;
+        }
+        if (sensitivity) {
+            if (exactCheckBox.isSelected() || rule != null) {
+                showError("Card sensitivity runs a fixed number of sampled trials. Untick exact evaluation "
+                        + "and set Stop When to \"Trials reached\".");
+                return;
+            }
+            if (sampling != HandSampler.Sampling.PLAIN) {
+                showError("Card sensitivity compares the decks on the same hands, which needs plain sampling.");
+                return;
+            }
+            List<String> runCards = new ArrayList<>(deck);
+            Map<String, CardRoles.CardInfo> runInfos = new HashMap<>(cardInfos);
+            Map<String, Double> runFirst = new HashMap<>(weightsFirst);
+            Map<String, Double> runSecond = new HashMap<>(weightsSecond);
+            List<ComboRule> runCombos = new ArrayList<>();
+            for (ComboRule combo : combos)
+                runCombos.add(combo.copy());
+            RunSettings settings = new RunSettings().trials(trials).seed(seed).threads(threads).sampling(sampling);
+            currentWorker = SimulationWorker.forSimulation(
+                    () -> CardSensitivity.start(runCards, runInfos, runFirst, runSecond, runCombos, runPatterns,
+                            goingSecond, settings),
+                    HandSimulator::showResult, progressBar, statusLabel, runButton, stopButton);
+        } else if (turns > 1) {
+            Map<String, List<String>> runSearches = new LinkedHashMap<>(searches);
+            RunSettings settings = new RunSettings().trials(trials).seed(seed).threads(threads);
+            currentWorker = SimulationWorker.forSimulation(
+                    () -> MultiTurn.start(runDeck, goingSecond, runPatterns, runSearches, turns, settings),
+                    HandSimulator::showResult, progressBar, statusLabel, runButton, stopButton);
+        } else if (exactCheckBox.isSelected()) {
+            currentWorker = SimulationWorker.forTask(
+                    () -> ExactEvaluator.evaluate(runDeck, goingSecond, runPatterns),
+                    HandSimulator::showResult, progressBar, statusLabel, runButton, stopButton);
+        } else {
+            RunSettings settings = new RunSettings().trials(trials).seed(seed).threads(threads).stopWhen(rule)
+                    .sampling(sampling);
+            // Re-scoring covers a single turn only
+            if (bothTurns)
+                settings.collect(new BothTurns(runDeck, runPatterns));
+            else
+                settings.collect(new HandHistogram(runDeck));
+            settings.collect(new TopHands(runDeck, TOP_HANDS));
+            settings.collect(new CardImpact(runDeck, runPatterns));
+            LastRun run = new LastRun(new ArrayList<>(deck), rolesOf(cardInfos), shapesOf(runPatterns), goingSecond);
+            currentWorker = SimulationWorker.forSimulation(
+                    () -> SimulationEngine.start(runDeck, goingSecond, runPatterns, settings),
+                    result -> {
+                        run.result = result;
+                        showResult(result);
+                    }, progressBar, statusLabel, runButton, stopButton);
+            lastRun = run;
+        }
+        currentWorker.begin();
+    }
+
+    private static void showResult(SimulationResult result) {
+        try {
+            String brick = brickField.getText().trim();
+            result.brickBelow = brick.isEmpty() ? Double.NaN : Double.parseDouble(brick);
+        } catch (NumberFormatException e) {
+            result.brickBelow = Double.NaN;
+        }
+        shownResult = result;
+        outputPane.setDocument(TextPaneReport.of(result).getStyledDocument());
+        scoreChart.show(result);
+        cardImpactTableModel.show(result.collector(CardImpact.class));
+    }
+
+    // Re-score the last sampled run for the weights, pattern values and combo rules now in the
+    // tables, from the hands it drew. Only when nothing else changed since: the same deck, roles,
+    // turn and pattern shapes. Reads the tables directly, since they may be half-way through a reload.
+    private static void rescoreLastRun() {
+        LastRun run = lastRun;
+        if (run == null || run.result == null || (currentWorker != null && !currentWorker.isDone()))
+            return;
+        HandHistogram histogram = run.result.collector(HandHistogram.class);
+        if (histogram == null || !histogram.canRescore())
+            return;
+
+        Map<String, CardRoles.CardInfo> roles = new HashMap<>();
+        for (int i = 0; i < cardRolesTableModel.getRowCount(); i++) {
+            String card = (String) cardRolesTableModel.getValueAt(i, 0);
+            String role = (String) cardRolesTableModel.getValueAt(i, 1);
+            Boolean isOPT = (Boolean) cardRolesTableModel.getValueAt(i, 2);
+            if (card != null && !card.isEmpty() && role != null && !role.isEmpty())
+                roles.put(card, new CardRoles.CardInfo(role, isOPT != null && isOPT));
+        }
+        Map<String, Double> first = new HashMap<>();
+        Map<String, Double> second = new HashMap<>();
+        for (int i = 0; i < weightsTableModel.getRowCount(); i++) {
+            String card = (String) weightsTableModel.getValueAt(i, 0);
+            Double wf = (Double) weightsTableModel.getValueAt(i, 1);
+            Double ws = (Double) weightsTableModel.getValueAt(i, 2);
+            if (card != null && !card.isEmpty() && wf != null && ws != null) {
+                first.put(card, wf);
+                second.put(card, ws);
+            }
+        }
+        List<HandPattern> patterns = new ArrayList<>();
+        for (int i = 0; i < handPatternsTableModel.getRowCount(); i++) {
+            HandPattern hp = handPatternsTableModel.getHandPatternAt(i);
+            if (hp != null)
+                patterns.add(hp.copy());
+        }
+        List<ComboRule> rules = new ArrayList<>();
+        for (int i = 0; i < comboRulesTableModel.getRowCount(); i++)
+            rules.add(comboRulesTableModel.getRuleAt(i).copy());
+        if (!run.deck.equals(deck) || !run.roles.equals(rolesOf(roles)) || !run.shapes.equals(shapesOf(patterns))
+                || !turnPreferenceDropdown.getSelectedItem().equals(run.goingSecond ? "Going Second" : "Going First"))
+            return;
+
+        CompiledDeck reweighted;
+        try {
+            reweighted = CompiledDeck.compile(run.deck, roles, first, second, rules);
+        } catch (IllegalArgumentException e) {
+            statusLabel.setText("Not re-scored: " + e.getMessage());
+            return;
+        }
+        SimulationResult result = histogram.rescore(run.result, reweighted, patterns, run.goingSecond);
+        showResult(result);
+        statusLabel.setText(String.format("Re-scored %,d distinct hands, no new trials", histogram.distinctHands()));
+    }
+
+    // Roles as text, for comparing against the roles of the last run
+    private static String rolesOf(Map<String, CardRoles.CardInfo> roles) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, CardRoles.CardInfo> entry : new TreeMap<>(roles).entrySet())
+            sb.append(entry.getKey()).append('=').append(entry.getValue().role).append(',')
+                    .append(entry.getValue().isOPT).append('\n');
+        return sb.toString();
+    }
+
+    // What each pattern asks for, leaving out its value
+    private static String shapesOf(List<HandPattern> patterns) {
+        StringBuilder sb = new StringBuilder();
+        for (HandPattern pattern : patterns)
+            sb.append(pattern.getRequiredCards()).append(new TreeMap<>(pattern.getRoleCounts())).append('\n');
+        return sb.toString();
+    }
 
-        SimulationResult result = runSimulation(deck, trials, goingSecond, cardInfos, weightsFirst, weightsSecond,
-                handPatterns);
-        outputPane.setDocument(result.toTextPane().getStyledDocument());
+    // What a sampled run was run on, and its latest result
+    private static class LastRun {
+        final List<String> deck;
+        final String roles;
+        final String shapes;
+        final boolean goingSecond;
+        SimulationResult result;
+
+        LastRun(List<String> deck, String roles, String shapes, boolean goingSecond) {
+            this.deck = deck;
+            this.roles = roles;
+            this.shapes = shapes;
+            this.goingSecond = goingSecond;
+        }
     }
 
     // Sync data from GUI tables back into cardInfos, weightsFirst, weightsSecond,
@@ -391,6 +724,10 @@ public class HandSimulator {
             if (hp != null)
                 handPatterns.add(hp);
         }
+
+        combos.clear();
+        for (int i = 0; i < comboRulesTableModel.getRowCount(); i++)
+            combos.add(comboRulesTableModel.getRuleAt(i));
     }
 
     // --------- Table Models ---------
@@ -692,134 +1029,155 @@ public class HandSimulator {
         }
     }
 
-    // put in seperate class later
-    private static SimulationResult runSimulation(List<String> deck, int trials, boolean goingSecond,
-            Map<String, CardRoles.CardInfo> cardInfos, Map<String, Double> weightsFirst,
-            Map<String, Double> weightsSecond, List<HandPattern> patterns) {
-        List<Double> handScores = new ArrayList<>();
-        double totalScore = 0.0;
-        double bestScore = Double.NEGATIVE_INFINITY;
-        List<String> bestHand = new ArrayList<>();
-        double worstScore = Double.POSITIVE_INFINITY;
-        List<String> worstHand = new ArrayList<>();
-        int handSize = goingSecond ? 6 : 5; // 6 cards for going second, 5 for going first
-
-        double totalStarters = 0.0, totalExtenders = 0.0, totalHandtraps = 0.0, totalSoftGarnets = 0.0;
-        Set<String> bestHandStarters = new HashSet<>(), bestHandExtenders = new HashSet<>(),
-                bestHandHandtraps = new HashSet<>(), bestHandSoftGarnets = new HashSet<>();
-
-        Map<HandPattern, Integer> patternMatchCounts = new HashMap<>();
-        for (HandPattern pattern : patterns)
-            patternMatchCounts.put(pattern, 0);
-
-        for (int i = 0; i < trials; i++) {
-            Collections.shuffle(deck);
-            List<String> hand = new ArrayList<>(deck.subList(0, handSize));
-            double score = evaluateHand(hand, goingSecond, patterns, weightsFirst, weightsSecond);
-            handScores.add(score);
-            totalScore += score;
-
-            Set<String> starters = new HashSet<>();
-            Set<String> extenders = new HashSet<>();
-            Set<String> handtraps = new HashSet<>();
-            Set<String> softGarnets = new HashSet<>();
-
-            Set<String> seenCards = new HashSet<>();
-            for (String card : hand) {
-                CardRoles.CardInfo info = CardRoles.getEffectiveInfo(card, cardInfos);
-                String role = info.role;
-                if (info.isOPT && seenCards.contains(card))
-                    continue;
-
-                switch (role) {
-                    case "starter" -> starters.add(card);
-                    case "extender" -> extenders.add(card);
-                    case "handtrap" -> handtraps.add(card);
-                    case "soft garnet" -> softGarnets.add(card);
-                }
+    // Combo Rules Table Model: required items, forbidden items, bonus (see ComboRule)
+    static class ComboRulesTableModel extends AbstractTableModel {
+        private final String[] columns = { "Required (cards or @role, comma separated)", "Forbidden", "Bonus" };
+        private final List<ComboRule> data = new ArrayList<>();
 
-                seenCards.add(card);
-            }
+        public void setData(List<ComboRule> rules) {
+            data.clear();
+            data.addAll(rules);
+            fireTableDataChanged();
+        }
 
-            totalStarters += starters.size();
-            totalExtenders += extenders.size();
-            totalHandtraps += handtraps.size();
-            totalSoftGarnets += softGarnets.size();
-
-            if (score > bestScore) {
-                bestScore = score;
-                bestHand = new ArrayList<>(hand);
-                bestHandStarters = new HashSet<>(starters);
-                bestHandExtenders = new HashSet<>(extenders);
-                bestHandHandtraps = new HashSet<>(handtraps);
-                bestHandSoftGarnets = new HashSet<>(softGarnets);
-            }
+        public void addRow(ComboRule rule) {
+            data.add(rule);
+            fireTableRowsInserted(data.size() - 1, data.size() - 1);
+        }
 
-            if (score < worstScore) {
-                worstScore = score;
-                worstHand = new ArrayList<>(hand);
+        public void removeRow(int idx) {
+            if (idx >= 0 && idx < data.size()) {
+                data.remove(idx);
+                fireTableRowsDeleted(idx, idx);
             }
+        }
 
-            for (HandPattern pattern : patterns) {
-                if (pattern.matches(new ArrayList<>(hand))) {
-                    patternMatchCounts.put(pattern, patternMatchCounts.get(pattern) + 1);
-                }
-            }
+        public ComboRule getRuleAt(int row) {
+            return data.get(row);
         }
 
-        double avg = totalScore / trials;
-        double median = calculateMedian(handScores);
-        double var = calculateVariance(handScores, avg);
-        double stdDev = Math.sqrt(var);
+        @Override
+        public int getRowCount() {
+            return data.size();
+        }
 
-        return new SimulationResult(trials, avg, median, var, stdDev,
-                bestScore, bestHand, bestHandStarters, bestHandExtenders, bestHandHandtraps, bestHandSoftGarnets,
-                worstScore, worstHand,
-                totalStarters / trials, totalExtenders / trials, totalHandtraps / trials, totalSoftGarnets / trials,
-                patternMatchCounts);
-    }
+        @Override
+        public int getColumnCount() {
+            return columns.length;
+        }
 
-    private static double calculateMedian(List<Double> scores) {
-        Collections.sort(scores);
-        int mid = scores.size() / 2;
-        return scores.size() % 2 == 0 ? (scores.get(mid - 1) + scores.get(mid)) / 2.0 : scores.get(mid);
-    }
+        @Override
+        public String getColumnName(int col) {
+            return columns[col];
+        }
 
-    private static double calculateVariance(List<Double> scores, double mean) {
-        double sumSq = 0.0;
-        for (double d : scores)
-            sumSq += (d - mean) * (d - mean);
-        return sumSq / scores.size();
-    }
+        @Override
+        public Object getValueAt(int row, int col) {
+            ComboRule rule = data.get(row);
+            return switch (col) {
+                case 0 -> String.join(",", rule.required);
+                case 1 -> String.join(",", rule.forbidden);
+                case 2 -> rule.bonus;
+                default -> null;
+            };
+        }
 
-    // Evaluate a hand
-    public static double evaluateHand(List<String> hand, boolean goingSecond, List<HandPattern> patterns,
-            Map<String, Double> weightsFirst, Map<String, Double> weightsSecond) {
-        double score = 0;
-        Set<String> uniqueCards = new HashSet<>();
-        Set<String> rolesInHand = new HashSet<>();
-
-        for (String card : hand) {
-            if (uniqueCards.add(card) || !CardRoles.getEffectiveInfo(card, cardInfos).isOPT) {
-                if (goingSecond) {
-                    score += CardWeights.getWeightGoingSecond(card, weightsSecond);
-                } else {
-                    score += CardWeights.getWeightGoingFirst(card, weightsFirst);
-                }
-                String role = CardRoles.getEffectiveInfo(card, cardInfos).role;
-                if (role != null) {
-                    rolesInHand.add(role);
+        @Override
+        public void setValueAt(Object val, int row, int col) {
+            ComboRule rule = data.get(row);
+            String s = val != null ? val.toString() : "";
+            try {
+                switch (col) {
+                    case 0 -> {
+                        rule.required.clear();
+                        rule.required.addAll(ComboRule.items(s));
+                    }
+                    case 1 -> {
+                        rule.forbidden.clear();
+                        rule.forbidden.addAll(ComboRule.items(s));
+                    }
+                    case 2 -> rule.bonus = Double.parseDouble(s.trim());
                 }
+            } catch (NumberFormatException e) {
+                // ignore invalid double input
             }
+            fireTableCellUpdated(row, col);
+        }
+
+        @Override
+        public boolean isCellEditable(int row, int col) {
+            return true;
         }
+    }
 
-        for (HandPattern pattern : patterns) {
-            if (pattern.matches(hand)) {
-                score += pattern.getHandValue();
+    // Read-only table of a run's card impact, one row per card; sortable by any column
+    static class CardImpactTableModel extends AbstractTableModel {
+        private static final String[] FIXED = { "Card", "In Hand %", "Score With", "Score Without", "Delta",
+                "Copies Drawn", "Copies Counted" };
+        private List<CardImpact.Row> rows = new ArrayList<>();
+        private int patternCount = 0;
+
+        // Shows the rows of `impact`, or none if the run had no card impact
+        public void show(CardImpact impact) {
+            int patterns = impact != null ? impact.patterns().size() : 0;
+            rows = impact != null ? impact.rows() : new ArrayList<>();
+            if (patterns != patternCount) {
+                patternCount = patterns;
+                fireTableStructureChanged();
+            } else {
+                fireTableDataChanged(); // keeps the sort order while a run updates the rows
             }
+        }
 
+        @Override
+        public int getRowCount() {
+            return rows.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return FIXED.length + 2 * patternCount;
+        }
+
+        @Override
+        public String getColumnName(int col) {
+            if (col < FIXED.length)
+                return FIXED[col];
+            int p = (col - FIXED.length) / 2 + 1;
+            return (col - FIXED.length) % 2 == 0 ? "Pattern " + p + " With %" : "Pattern " + p + " Without %";
+        }
+
+        @Override
+        public Class<?> getColumnClass(int col) {
+            return col == 0 ? String.class : Double.class;
         }
 
-        return score;
+        @Override
+        public Object getValueAt(int row, int col) {
+            CardImpact.Row impact = rows.get(row);
+            if (col >= FIXED.length) {
+                int p = (col - FIXED.length) / 2;
+                return percent((col - FIXED.length) % 2 == 0 ? impact.patternWith[p] : impact.patternWithout[p]);
+            }
+            return switch (col) {
+                case 0 -> impact.card;
+                case 1 -> percent(impact.inHand);
+                case 2 -> round(impact.scoreWith);
+                case 3 -> round(impact.scoreWithout);
+                case 4 -> round(impact.scoreDelta());
+                case 5 -> round(impact.copiesDrawn);
+                case 6 -> round(impact.copiesCounted);
+                default -> null;
+            };
+        }
+
+        // Blank for a card the run never drew, or always drew
+        private static Double percent(double rate) {
+            return Double.isNaN(rate) ? null : Math.round(rate * 10000) / 100.0;
+        }
+
+        private static Double round(double value) {
+            return Double.isNaN(value) ? null : Math.round(value * 1000) / 1000.0;
+        }
     }
 }
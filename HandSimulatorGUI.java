@@ -11,6 +11,9 @@ public class HandSimulatorGUI {
     private static final Map<String, Double> weightsSecond = new HashMap<>();
     private static List<String> deck = new ArrayList<>();
     private static final List<HandPattern> handPatterns = new ArrayList<>();
+    private static final List<ComboRule> combos = new ArrayList<>();
+    private static CompiledDeck compiledDeck; // rebuilt lazily after the deck or overrides change
+    private static SimulationWorker currentWorker;
 
     public static void main(String[] args) {
         SwingUtilities.invokeLater(HandSimulatorGUI::createAndShowGUI);
@@ -22,7 +25,7 @@ public class HandSimulatorGUI {
         frame.setSize(1000, 700);
         frame.setLayout(new BorderLayout());
 
-        JPanel inputPanel = new JPanel(new GridLayout(8, 2, 10, 10));
+        JPanel inputPanel = new JPanel(new GridLayout(12, 2, 10, 10));
 
         JButton deckButton = new JButton("Select .ydk Deck File");
         JButton roleFileButton = new JButton("Load Role Overrides File");
@@ -32,18 +35,35 @@ public class HandSimulatorGUI {
         JButton loadConfigButton = new JButton("Load Config");
 
         JTextField trialsField = new JTextField("100000");
-        JComboBox<String> turnPreferenceDropdown = new JComboBox<>(new String[]{"Going First", "Going Second"});
+        JComboBox<String> turnPreferenceDropdown = new JComboBox<>(new String[]{"Going First", "Going Second", "Both Turns"});
+        JTextField seedField = new JTextField("");
+        JCheckBox exactCheckBox = new JCheckBox("Exact (enumerate every hand)");
+        JComboBox<String> stopWhenDropdown = new JComboBox<>(StoppingRule.CHOICES);
+        JTextField targetField = new JTextField("");
+        JComboBox<HandSampler.Sampling> samplingDropdown = new JComboBox<>(HandSampler.Sampling.values());
 
         JButton runButton = new JButton("Run Simulation");
+        JButton stopButton = new JButton("Stop");
+        stopButton.setEnabled(false);
+        JProgressBar progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+        JLabel statusLabel = new JLabel("Idle");
 
         inputPanel.add(deckButton);
         inputPanel.add(roleFileButton);
         inputPanel.add(weightsFirstButton);
         inputPanel.add(weightsSecondButton);
-        inputPanel.add(new JLabel("Number of Trials:"));
+        inputPanel.add(new JLabel("Number of Trials (max):"));
         inputPanel.add(trialsField);
+        inputPanel.add(stopWhenDropdown);
+        inputPanel.add(targetField);
         inputPanel.add(new JLabel("Turn Preference:"));
         inputPanel.add(turnPreferenceDropdown);
+        inputPanel.add(new JLabel("Seed (blank = random):"));
+        inputPanel.add(seedField);
+        inputPanel.add(new JLabel("Sampling:"));
+        inputPanel.add(samplingDropdown);
+        inputPanel.add(exactCheckBox);
         inputPanel.add(new JLabel("Custom Config Options:"));
         inputPanel.add(new JLabel("(Save/Load below)"));
         inputPanel.add(saveConfigButton);
@@ -53,13 +73,16 @@ public class HandSimulatorGUI {
         frame.add(inputPanel, BorderLayout.NORTH);
 
         JTextArea configArea = new JTextArea(12, 40);
-        configArea.setText("Enter card overrides (name=role,opt)\nEnter weights (name=first,second)\nEnter hand patterns (names separated by comma | role:count | weight)\nExample:\nAsh Blossom=handtrap,true\nAsh Blossom=0.5,1.0\nAsh Blossom,Effect Veiler|handtrap:1|5.0\n");
+        configArea.setText("Enter card overrides (name=role,opt)\nEnter weights (name=first,second)\nEnter hand patterns (names separated by comma | role:count | weight)\nEnter combo rules (combo:required | forbidden | bonus, @ for a role)\nExample:\nAsh Blossom=handtrap,true\nAsh Blossom=0.5,1.0\nAsh Blossom,Effect Veiler|handtrap:1|5.0\ncombo:Ext Ryzeal,@handtrap|1.0\n");
         JScrollPane configScroll = new JScrollPane(configArea);
         frame.add(configScroll, BorderLayout.WEST);
 
         JTextPane outputPane = new JTextPane();
         outputPane.setEditable(false);
-        frame.add(new JScrollPane(outputPane), BorderLayout.CENTER);
+        ScoreChart scoreChart = new ScoreChart();
+        JSplitPane outputSplit = new JSplitPane(JSplitPane.VERTICAL_SPLIT, new JScrollPane(outputPane), scoreChart);
+        outputSplit.setResizeWeight(0.7);
+        frame.add(outputSplit, BorderLayout.CENTER);
 
         // Action listeners
         deckButton.addActionListener(e -> {
@@ -68,6 +91,7 @@ public class HandSimulatorGUI {
                 try {
                     YDKImporter importer = new YDKImporter("src/cards.csv");
                     deck = importer.getCardNamesFromYDK(file.getAbsolutePath());
+                    compiledDeck = null;
                 } catch (IOException ex) {
                     showError("Failed to read deck file");
                 }
@@ -94,17 +118,59 @@ public class HandSimulatorGUI {
 
         runButton.addActionListener(e -> {
             try {
-                int trials = Integer.parseInt(trialsField.getText());
-                boolean goingSecond = turnPreferenceDropdown.getSelectedItem().equals("Going Second");
-                SimulationResult result = runSimulation(deck, trials, goingSecond, cardInfos, weightsFirst, weightsSecond, handPatterns);
-                outputPane.setDocument(result.toTextPane().getStyledDocument());
+                long trials = Long.parseLong(trialsField.getText().trim());
+                boolean bothTurns = turnPreferenceDropdown.getSelectedItem().equals("Both Turns");
+                boolean goingSecond = bothTurns || turnPreferenceDropdown.getSelectedItem().equals("Going Second");
+                String seedText = seedField.getText().trim();
+                long seed = seedText.isEmpty() ? SimulationEngine.randomSeed() : Long.parseLong(seedText);
+                int choice = stopWhenDropdown.getSelectedIndex();
+                HandSampler.Sampling sampling = (HandSampler.Sampling) samplingDropdown.getSelectedItem();
+                StoppingRule rule = choice == 0 ? null : StoppingRule.fromChoice(choice, Double.parseDouble(targetField.getText().trim()));
+                if (compiledDeck == null)
+                    compiledDeck = CompiledDeck.compile(deck, cardInfos, weightsFirst, weightsSecond, combos);
+                CompiledDeck runDeck = compiledDeck;
+                List<HandPattern> runPatterns = List.copyOf(handPatterns);
+                if (bothTurns && sampling == HandSampler.Sampling.STRATIFIED)
+                    throw new IllegalArgumentException("Both turns cannot use stratified sampling, which draws the starters first");
+                if (bothTurns && exactCheckBox.isSelected())
+                    throw new IllegalArgumentException("Both turns is a sampled run; pick one turn for exact evaluation");
+                if (exactCheckBox.isSelected()) {
+                    currentWorker = SimulationWorker.forTask(() -> ExactEvaluator.evaluate(runDeck, goingSecond, runPatterns),
+                        result -> {
+                            outputPane.setDocument(TextPaneReport.of(result).getStyledDocument());
+                            scoreChart.show(result);
+                        },
+                        progressBar, statusLabel, runButton, stopButton);
+                } else {
+                    RunSettings settings = new RunSettings().trials(trials).seed(seed).stopWhen(rule).sampling(sampling);
+                    if (bothTurns)
+                        settings.collect(new BothTurns(runDeck, runPatterns));
+                    settings.collect(new TopHands(runDeck, 10));
+                    currentWorker = SimulationWorker.forSimulation(() -> SimulationEngine.start(runDeck, goingSecond, runPatterns,
+                            settings),
+                        result -> {
+                            outputPane.setDocument(TextPaneReport.of(result).getStyledDocument());
+                            scoreChart.show(result);
+                        },
+                        progressBar, statusLabel, runButton, stopButton);
+                }
+                currentWorker.begin();
             } catch (NumberFormatException ex) {
-                showError("Number of trials must be a valid integer");
+                showError("Number of trials and seed must be valid integers, and the target a number");
+            } catch (IllegalArgumentException ex) {
+                showError(ex.getMessage());
             }
         });
 
         JButton applyConfigButton = new JButton("Apply Config");
         inputPanel.add(applyConfigButton);
+        inputPanel.add(stopButton);
+        inputPanel.add(progressBar);
+        inputPanel.add(statusLabel);
+        stopButton.addActionListener(e -> {
+            if (currentWorker != null)
+                currentWorker.stop();
+        });
         applyConfigButton.addActionListener(e -> applyConfig(configArea.getText()));
 
         frame.setVisible(true);
@@ -133,6 +199,7 @@ public class HandSimulatorGUI {
 
     private static void loadRoleOverrides(File file) {
         if (file == null) return;
+        compiledDeck = null;
         try {
             Files.lines(file.toPath())
                 .filter(line -> line.contains("="))
@@ -148,6 +215,7 @@ public class HandSimulatorGUI {
 
     private static void loadWeights(File file, Map<String, Double> map) {
         if (file == null) return;
+        compiledDeck = null;
         try {
             Files.lines(file.toPath())
                 .filter(line -> line.contains("="))
@@ -161,173 +229,18 @@ public class HandSimulatorGUI {
     }
 
     private static void applyConfig(String text) {
+        SimulatorConfig config = SimulatorConfig.parse(text);
+        cardInfos.putAll(config.cardInfos);
+        weightsFirst.putAll(config.weightsFirst);
+        weightsSecond.putAll(config.weightsSecond);
         handPatterns.clear();
-        Arrays.stream(text.split("\\n"))
-            .map(String::trim)
-            .filter(line -> !line.isEmpty() && !line.startsWith("#"))
-            .forEach(line -> {
-                try {
-                    if (line.contains("=")) {
-                        String[] parts = line.split("=");
-                        if (parts[1].contains(",")) {
-                            // weights line
-                            String[] weights = parts[1].split(",");
-                            weightsFirst.put(parts[0].trim(), Double.parseDouble(weights[0].trim()));
-                            weightsSecond.put(parts[0].trim(), Double.parseDouble(weights[1].trim()));
-                        } else if (parts[1].contains("handtrap") || parts[1].contains("starter") || parts[1].contains("extender")) {
-                            // card role line
-                            String[] roleParts = parts[1].split(",");
-                            cardInfos.put(parts[0].trim(), new CardRoles.CardInfo(roleParts[0].trim(), Boolean.parseBoolean(roleParts[1].trim())));
-                        }
-                    } else if (line.contains("|")) {
-                        // hand pattern line
-                        String[] parts = line.split("\\|");
-                        List<String> requiredCards = Arrays.asList(parts[0].split(","));
-                        Map<String, Integer> roleCounts = new HashMap<>();
-                        for (String rc : parts[1].split(",")) {
-                            String[] rolePair = rc.split(":");
-                            roleCounts.put(rolePair[0].trim(), Integer.parseInt(rolePair[1].trim()));
-                        }
-                        double weight = parts.length > 2 ? Double.parseDouble(parts[2].trim()) : 1.0;
-                        handPatterns.add(new HandPattern(requiredCards, roleCounts, weight));
-                    }
-                } catch (Exception e) {
-                    // Just ignore malformed lines in config
-                }
-            });
+        handPatterns.addAll(config.handPatterns);
+        combos.clear();
+        combos.addAll(config.combos);
+        compiledDeck = null;
     }
 
     private static void showError(String message) {
         JOptionPane.showMessageDialog(null, message, "Error", JOptionPane.ERROR_MESSAGE);
     }
-
-
-
-    //put in seperate class later
-    private static SimulationResult runSimulation(List<String> deck, int trials, boolean goingSecond, Map<String, CardRoles.CardInfo> cardInfos, Map<String, Double> weightsFirst, Map<String, Double> weightsSecond, List<HandPattern> patterns) {
-        List<Double> handScores = new ArrayList<>();
-        double totalScore = 0.0;
-        double bestScore = Double.NEGATIVE_INFINITY;
-        List<String> bestHand = new ArrayList<>();
-        double worstScore = Double.POSITIVE_INFINITY;
-        List<String> worstHand = new ArrayList<>();
-        int handSize = goingSecond ? 6 : 5; // 6 cards for going second, 5 for going first
-
-        double totalStarters = 0.0, totalExtenders = 0.0, totalHandtraps = 0.0, totalSoftGarnets = 0.0;
-        Set<String> bestHandStarters = new HashSet<>(), bestHandExtenders = new HashSet<>(),
-                bestHandHandtraps = new HashSet<>(), bestHandSoftGarnets = new HashSet<>();
-
-        Map<HandPattern, Integer> patternMatchCounts = new HashMap<>();
-        for (HandPattern pattern : patterns)
-            patternMatchCounts.put(pattern, 0);
-
-        for (int i = 0; i < trials; i++) {
-            Collections.shuffle(deck);
-            List<String> hand = new ArrayList<>(deck.subList(0, handSize));
-            double score = evaluateHand(hand, goingSecond, patterns, weightsFirst, weightsSecond);
-            handScores.add(score);
-            totalScore += score;
-
-            Set<String> starters = new HashSet<>();
-            Set<String> extenders = new HashSet<>();
-            Set<String> handtraps = new HashSet<>();
-            Set<String> softGarnets = new HashSet<>();
-
-            Set<String> seenCards = new HashSet<>();
-            for (String card : hand) {
-                CardRoles.CardInfo info = CardRoles.getEffectiveInfo(card, cardInfos);
-                String role = info.role;
-                if (info.isOPT && seenCards.contains(card))
-                    continue;
-
-                switch (role) {
-                    case "starter" -> starters.add(card);
-                    case "extender" -> extenders.add(card);
-                    case "handtrap" -> handtraps.add(card);
-                    case "soft garnet" -> softGarnets.add(card);
-                }
-
-                seenCards.add(card);
-            }
-
-            totalStarters += starters.size();
-            totalExtenders += extenders.size();
-            totalHandtraps += handtraps.size();
-            totalSoftGarnets += softGarnets.size();
-
-            if (score > bestScore) {
-                bestScore = score;
-                bestHand = new ArrayList<>(hand);
-                bestHandStarters = new HashSet<>(starters);
-                bestHandExtenders = new HashSet<>(extenders);
-                bestHandHandtraps = new HashSet<>(handtraps);
-                bestHandSoftGarnets = new HashSet<>(softGarnets);
-            }
-
-            if (score < worstScore) {
-                worstScore = score;
-                worstHand = new ArrayList<>(hand);
-            }
-
-            for (HandPattern pattern : patterns) {
-                if (pattern.matches(new ArrayList<>(hand))) {
-                    patternMatchCounts.put(pattern, patternMatchCounts.get(pattern) + 1);
-                }
-            }
-        }
-
-        double avg = totalScore / trials;
-        double median = calculateMedian(handScores);
-        double var = calculateVariance(handScores, avg);
-        double stdDev = Math.sqrt(var);
-
-        return new SimulationResult(trials, avg, median, var, stdDev,
-                bestScore, bestHand, bestHandStarters, bestHandExtenders, bestHandHandtraps, bestHandSoftGarnets,
-                worstScore, worstHand,
-                totalStarters / trials, totalExtenders / trials, totalHandtraps / trials, totalSoftGarnets / trials,
-                patternMatchCounts);
-    }
-
-    private static double calculateMedian(List<Double> scores) {
-        Collections.sort(scores);
-        int mid = scores.size() / 2;
-        return scores.size() % 2 == 0 ? (scores.get(mid - 1) + scores.get(mid)) / 2.0 : scores.get(mid);
-    }
-
-    private static double calculateVariance(List<Double> scores, double mean) {
-        double sumSq = 0.0;
-        for (double d : scores)
-            sumSq += (d - mean) * (d - mean);
-        return sumSq / scores.size();
-    }
-
-    // Evaluate a hand
-    public static double evaluateHand(List<String> hand, boolean goingSecond, List<HandPattern> patterns, Map<String, Double> weightsFirst, Map<String, Double> weightsSecond) {
-        double score = 0;
-        Set<String> uniqueCards = new HashSet<>();
-        Set<String> rolesInHand = new HashSet<>();
-
-        for (String card : hand) {
-            if (uniqueCards.add(card) || !CardRoles.getRole(card).isOPT) {
-                if (goingSecond) {
-                    score += CardWeights.getWeightGoingSecond(card, weightsSecond);
-                } else {
-                    score += CardWeights.getWeightGoingFirst(card, weightsFirst);
-                }
-                String role = CardRoles.getRole(card).role;
-                if (role != null) {
-                    rolesInHand.add(role);
-                }
-            }
-        }
-
-        for (HandPattern pattern : patterns) {
-            if (pattern.matches(hand)) {
-                score += pattern.getHandValue();
-            }
-
-        }
-
-        return score;
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,200 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// The hands of one sampled run, saved to a memory-mapped file so later runs can replay them
+// under other roles, weights or patterns instead of drawing again (see RunSettings.record and
+// RunSettings.replay).
+//
+// A hand is stored as handSize bytes, one compiled card id each, in draw order. Card ids
+// follow the deck list alone, so the same file serves any config on that deck. Hands are laid
+// out by block (see BlockRun) at fixed offsets, so every worker thread writes or reads its own
+// block with no locking, and a replay folds the blocks in the same order as the recorded run:
+// with unchanged roles, weights and patterns it gives bit-identical results. Two configs
+// replayed from one store see exactly the same hands, so their difference carries no
+// sampling noise. Stratified and antithetic draws depend on the roles and weights of the
+// recorded run; replayed under others they are still a fair sample.
+//
+// The file is named after a hash of the deck list, the hand size, the sampling and the seed
+// (see pathFor). It is written under a temporary name and moved into place once the run
+// finishes, so a cancelled run leaves nothing behind. The data lives off-heap in mappings of
+// up to 1 GB each, which keeps 100M-hand stores out of the Java heap.
+public class HandStore {
+    private static final int MAGIC = 0x59484E44; // "YHND"
+    private static final int VERSION = 1;
+    private static final int HEADER = 48;
+    private static final long SEGMENT_BYTES = 1L << 30;
+
+    final long deckHash;
+    final int handSize;
+    final HandSampler.Sampling sampling;
+    final long seed;
+    private long hands;          // hands in the store, or its capacity while recording
+    private final int cardCount;
+    private final long blockBytes;
+    private final long blocksPerSegment;
+    private final ByteBuffer header;
+    private final MappedByteBuffer[] segments;
+    private final FileChannel channel; // open while recording, null once finished or when read
+    private final Path temp;
+    private final Path path;
+
+    private HandStore(ByteBuffer header, FileChannel channel, Path temp, Path path, FileChannel.MapMode mode)
+            throws IOException {
+        this.header = header;
+        this.handSize = header.getInt(8);
+        this.sampling = HandSampler.Sampling.values()[header.getInt(12)];
+        this.deckHash = header.getLong(16);
+        this.seed = header.getLong(24);
+        this.hands = header.getLong(32);
+        this.cardCount = header.getInt(40);
+        this.channel = channel;
+        this.temp = temp;
+        this.path = path;
+        blockBytes = (long) BlockRun.BLOCK_SIZE * handSize;
+        blocksPerSegment = Math.max(1, SEGMENT_BYTES / blockBytes);
+        long blocks = (hands + BlockRun.BLOCK_SIZE - 1) / BlockRun.BLOCK_SIZE;
+        segments = new MappedByteBuffer[(int) ((blocks + blocksPerSegment - 1) / blocksPerSegment)];
+        long dataBytes = hands * handSize;
+        FileChannel source = channel != null ? channel : FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            for (int s = 0; s < segments.length; s++) {
+                long start = s * blocksPerSegment * blockBytes;
+                long length = Math.min(blocksPerSegment * blockBytes, dataBytes - start);
+                segments[s] = source.map(mode, HEADER + start, length);
+            }
+        } finally {
+            if (channel == null)
+                source.close(); // the mappings stay valid
+        }
+    }
+
+    // Where the hands of this deck, hand size, sampling and seed are stored under dir
+    public static Path pathFor(Path dir, CompiledDeck deck, int handSize, HandSampler.Sampling sampling, long seed) {
+        return dir.resolve(String.format("%016x-%d-%s-%016x.hands", deckHash(deck), handSize,
+                sampling.name().toLowerCase(), seed));
+    }
+
+    // FNV-1a over the deck list in order, which is what fixes the card ids
+    static long deckHash(CompiledDeck deck) {
+        long hash = 0xCBF29CE484222325L;
+        for (int card : deck.cards) {
+            for (byte b : (deck.names[card] + "\n").getBytes(StandardCharsets.UTF_8)) {
+                hash ^= b & 0xFF;
+                hash *= 0x100000001B3L;
+            }
+        }
+        return hash;
+    }
+
+    // An empty store for up to `hands` hands, to pass to RunSettings.record
+    public static HandStore create(Path path, CompiledDeck deck, int handSize, HandSampler.Sampling sampling,
+                                   long seed, long hands) throws IOException {
+        if (deck.cardCount() > 256)
+            throw new IllegalArgumentException("A stored hand keeps one byte per card; the deck has "
+                    + deck.cardCount() + " different cards");
+        if (hands <= 0)
+            throw new IllegalArgumentException("A store needs room for at least one hand");
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        header.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, handSize).putInt(12, sampling.ordinal())
+                .putLong(16, deckHash(deck)).putLong(24, seed).putLong(32, hands).putInt(40, deck.cardCount());
+
+        Path dir = path.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path temp = Files.createTempFile(dir, path.getFileName().toString(), ".tmp");
+        FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            return new HandStore(header, channel, temp, path, FileChannel.MapMode.READ_WRITE);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    // A finished store, mapped read-only
+    public static HandStore open(Path path) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+            }
+            if (header.hasRemaining() || header.getInt(0) != MAGIC || header.getInt(4) != VERSION)
+                throw new IOException(path + " is not a hand store");
+            int handSize = header.getInt(8);
+            long hands = header.getLong(32);
+            if (handSize <= 0 || hands <= 0 || header.getInt(12) < 0
+                    || header.getInt(12) >= HandSampler.Sampling.values().length
+                    || channel.size() < HEADER + hands * handSize)
+                throw new IOException(path + " is damaged");
+        }
+        return new HandStore(header, null, null, path, FileChannel.MapMode.READ_ONLY);
+    }
+
+    public long hands() {
+        return hands;
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    // True if the hands were drawn from this deck list, so its card ids mean the same cards
+    public boolean matches(CompiledDeck deck) {
+        return deck.cardCount() == cardCount && deckHash(deck) == deckHash;
+    }
+
+    // The stored hands of one block, handSize bytes each
+    byte[] readBlock(long block, int trials) {
+        byte[] bytes = new byte[trials * handSize];
+        segments[(int) (block / blocksPerSegment)].get((int) (block % blocksPerSegment * blockBytes), bytes);
+        return bytes;
+    }
+
+    void writeBlock(long block, byte[] bytes) {
+        segments[(int) (block / blocksPerSegment)].put((int) (block % blocksPerSegment * blockBytes), bytes);
+    }
+
+    // Ends a recording: keeps the first `recorded` hands and moves the file into place
+    synchronized void finish(long recorded) {
+        if (channel == null || !channel.isOpen())
+            return;
+        try {
+            hands = recorded;
+            header.putLong(32, recorded);
+            for (MappedByteBuffer segment : segments)
+                segment.force();
+            channel.write(header.duplicate().rewind(), 0);
+            try {
+                channel.truncate(HEADER + recorded * handSize); // a run that stopped early leaves a tail
+            } catch (IOException e) {
+                // some platforms refuse while the file is mapped; open() ignores the tail
+            }
+            channel.force(true);
+            channel.close();
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            discard();
+            throw new UncheckedIOException("Could not save the hands to " + path, e);
+        }
+    }
+
+    // Drops a recording that did not finish
+    synchronized void discard() {
+        if (temp == null)
+            return;
+        try {
+            if (channel != null)
+                channel.close();
+            Files.deleteIfExists(temp);
+        } catch (IOException e) {
+            // left for the next cleanup of the folder
+        }
+    }
+}
@@ -0,0 +1,56 @@
+// Confidence intervals for simulation estimates.
+public class Intervals {
+
+    // Two-sided z value for a confidence level, e.g. 0.95 -> 1.96
+    public static double z(double confidence) {
+        return inverseNormal(0.5 + confidence / 2.0);
+    }
+
+    // Half-width of the normal interval around a sample mean
+    public static double meanHalfWidth(double stdDev, long n, double z) {
+        return n > 1 ? z * stdDev / Math.sqrt(n) : Double.POSITIVE_INFINITY;
+    }
+
+    // Wilson score interval for `successes` out of `n`, as {low, high}
+    public static double[] wilson(long successes, long n, double z) {
+        if (n == 0)
+            return new double[] { 0.0, 1.0 };
+        double p = (double) successes / n;
+        double z2 = z * z;
+        double denominator = 1.0 + z2 / n;
+        double center = (p + z2 / (2.0 * n)) / denominator;
+        double half = z / denominator * Math.sqrt(p * (1.0 - p) / n + z2 / (4.0 * n * n));
+        return new double[] { Math.max(0.0, center - half), Math.min(1.0, center + half) };
+    }
+
+    public static double wilsonHalfWidth(long successes, long n, double z) {
+        double[] interval = wilson(successes, n, z);
+        return (interval[1] - interval[0]) / 2.0;
+    }
+
+    // Acklam's rational approximation of the standard normal quantile (relative error < 1.2e-9)
+    static double inverseNormal(double p) {
+        if (p <= 0.0 || p >= 1.0)
+            throw new IllegalArgumentException("Probability must be strictly between 0 and 1: " + p);
+        double[] a = { -3.969683028665376e+01, 2.209460984245205e+02, -2.759285104469687e+02,
+                1.383577518672690e+02, -3.066479806614716e+01, 2.506628277459239e+00 };
+        double[] b = { -5.447609879822406e+01, 1.615858368580409e+02, -1.556989798598866e+02,
+                6.680131188771972e+01, -1.328068155288572e+01 };
+        double[] c = { -7.784894002430293e-03, -3.223964580411365e-01, -2.400758277161838e+00,
+                -2.549732539343734e+00, 4.374664141464968e+00, 2.938163982698783e+00 };
+        double[] d = { 7.784695709041462e-03, 3.224671290700398e-01, 2.445134137142996e+00,
+                3.754408661907416e+00 };
+        double low = 0.02425;
+        if (p < low) {
+            double q = Math.sqrt(-2 * Math.log(p));
+            return (((((c[0] * q + c[1]) * q + c[2]) * q + c[3]) * q + c[4]) * q + c[5])
+                    / ((((d[0] * q + d[1]) * q + d[2]) * q + d[3]) * q + 1);
+        }
+        if (p > 1 - low)
+            return -inverseNormal(1 - p);
+        double q = p - 0.5;
+        double r = q * q;
+        return (((((a[0] * r + a[1]) * r + a[2]) * r + a[3]) * r + a[4]) * r + a[5]) * q
+                / (((((b[0] * r + b[1]) * r + b[2]) * r + b[3]) * r + b[4]) * r + 1);
+    }
+}
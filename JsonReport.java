@@ -0,0 +1,273 @@
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+// A result as one JSON object, for scripts. Scores and rates are plain numbers, patterns
+// are in the order they were given, and `run` describes the run (deck, turn, ...).
+public class JsonReport {
+    private final StringBuilder json = new StringBuilder();
+
+    public static String of(SimulationResult result, Map<String, String> run) {
+        JsonReport report = new JsonReport();
+        report.write(result, run);
+        return report.json.toString();
+    }
+
+    private void write(SimulationResult result, Map<String, String> run) {
+        json.append('{');
+        json.append("\"run\":{");
+        String sep = "";
+        for (Map.Entry<String, String> entry : run.entrySet()) {
+            json.append(sep).append(string(entry.getKey())).append(':').append(string(entry.getValue()));
+            sep = ",";
+        }
+        json.append('}');
+
+        field("exact", String.valueOf(result.exact));
+        if (result.exact) {
+            field("distinctHands", String.valueOf(result.distinctHands));
+        } else {
+            field("trials", String.valueOf(result.trials));
+            field("requestedTrials", String.valueOf(result.requestedTrials));
+            field("seed", result.seed != null ? String.valueOf(result.seed) : "null");
+            field("sampling", result.sampling != null ? string(result.sampling.name().toLowerCase()) : "null");
+            field("stopReason", result.stopReason != null ? string(result.stopReason) : "null");
+            field("handStore", result.handStore != null ? string(result.handStore) : "null");
+            field("confidence", number(result.confidence));
+        }
+
+        field("avg", number(result.avg));
+        if (!result.exact) {
+            field("avgInterval", interval(result.avg, result.stdDev, result));
+        }
+        field("median", number(result.median));
+        field("variance", number(result.variance));
+        field("stdDev", number(result.stdDev));
+        if (result.distribution != null) {
+            StringBuilder percentiles = new StringBuilder("{");
+            for (double q : SimulationResult.PERCENTILES) {
+                percentiles.append(percentiles.length() > 1 ? "," : "").append(string(String.format("p%.0f", q * 100)))
+                        .append(':').append(number(result.percentile(q)));
+            }
+            field("percentiles", percentiles.append('}').toString());
+        }
+        if (result.distribution != null && !Double.isNaN(result.brickBelow)) {
+            double[] brick = result.brickInterval();
+            field("brick", "{\"below\":" + number(result.brickBelow) + ",\"rate\":" + number(brick[0])
+                    + (result.exact ? "" : ",\"interval\":[" + number(brick[1]) + "," + number(brick[2]) + "]") + "}");
+        }
+
+        field("best", "{\"score\":" + number(result.bestScore)
+                + ",\"cards\":" + strings(result.bestHand)
+                + ",\"starters\":" + strings(result.bestStarters)
+                + ",\"extenders\":" + strings(result.bestExtenders)
+                + ",\"handtraps\":" + strings(result.bestHandtraps)
+                + ",\"softGarnets\":" + strings(result.bestSoftGarnets) + "}");
+        field("worst", "{\"score\":" + number(result.worstScore) + ",\"cards\":" + strings(result.worstHand) + "}");
+        field("roleAverages", "{\"starters\":" + number(result.avgStarters)
+                + ",\"extenders\":" + number(result.avgExtenders)
+                + ",\"handtraps\":" + number(result.avgHandtraps)
+                + ",\"softGarnets\":" + number(result.avgSoftGarnets) + "}");
+
+        json.append(",\"patterns\":[");
+        sep = "";
+        if (result.exact) {
+            for (Map.Entry<HandPattern, Double> entry : result.patternProbabilities.entrySet()) {
+                json.append(sep).append(pattern(entry.getKey()))
+                        .append(",\"probability\":").append(number(entry.getValue())).append('}');
+                sep = ",";
+            }
+        } else {
+            double z = Intervals.z(result.confidence);
+            for (Map.Entry<HandPattern, Long> entry : result.patternMatches.entrySet()) {
+                long matches = entry.getValue();
+                double[] interval = Intervals.wilson(matches, result.trials, z);
+                json.append(sep).append(pattern(entry.getKey()))
+                        .append(",\"matches\":").append(matches)
+                        .append(",\"rate\":").append(number((double) matches / result.trials))
+                        .append(",\"interval\":[").append(number(interval[0])).append(',').append(number(interval[1]))
+                        .append("]}");
+                sep = ",";
+            }
+        }
+        json.append(']');
+
+        if (result.distribution != null) {
+            json.append(",\"distribution\":[");
+            sep = "";
+            for (Map.Entry<Double, Double> entry : result.distribution.entrySet()) {
+                json.append(sep).append("{\"score\":").append(number(entry.getKey()))
+                        .append(",\"probability\":").append(number(entry.getValue())).append('}');
+                sep = ",";
+            }
+            json.append(']');
+        }
+        if (result.turns != null) {
+            MultiTurn.Turns turns = result.turns;
+            json.append(",\"turns\":[");
+            for (int t = 0; t < turns.turns; t++) {
+                json.append(t > 0 ? "," : "").append("{\"turn\":").append(t + 1)
+                        .append(",\"avgHandSize\":").append(number(turns.avgHandSize[t]))
+                        .append(",\"avg\":").append(number(turns.avg[t]))
+                        .append(",\"avgInterval\":").append(interval(turns.avg[t], turns.stdDev[t], result))
+                        .append(",\"median\":").append(number(turns.median[t]))
+                        .append(",\"stdDev\":").append(number(turns.stdDev[t]))
+                        .append(",\"starterRate\":").append(number((double) turns.withStarter[t] / turns.trials))
+                        .append(",\"patternRates\":[");
+                for (int p = 0; p < turns.patterns.size(); p++)
+                    json.append(p > 0 ? "," : "").append(number((double) turns.patternMatches[t][p] / turns.trials));
+                json.append("]}");
+            }
+            json.append(']');
+        }
+        if (result.firstTurn != null) {
+            SimulationResult first = result.firstTurn;
+            json.append(",\"firstTurn\":{\"avg\":").append(number(first.avg))
+                    .append(",\"avgInterval\":").append(interval(first.avg, first.stdDev, result))
+                    .append(",\"median\":").append(number(first.median))
+                    .append(",\"stdDev\":").append(number(first.stdDev))
+                    .append(",\"patternRates\":[");
+            sep = "";
+            for (long matches : first.patternMatches.values()) {
+                json.append(sep).append(number((double) matches / result.trials));
+                sep = ",";
+            }
+            json.append("]}");
+            json.append(",\"coinFlip\":{\"avg\":").append(number(result.coinFlipAvg))
+                    .append(",\"avgInterval\":").append(interval(result.coinFlipAvg, result.coinFlipStdDev, result))
+                    .append('}');
+            json.append(",\"secondMinusFirst\":{\"avg\":").append(number(result.turnGapAvg))
+                    .append(",\"avgInterval\":").append(interval(result.turnGapAvg, result.turnGapStdDev, result))
+                    .append('}');
+        }
+        TopHands top = result.collector(TopHands.class);
+        if (top != null) {
+            json.append(",\"topHands\":").append(hands(top.best()));
+            json.append(",\"bottomHands\":").append(hands(top.worst()));
+        }
+        CardImpact impact = result.collector(CardImpact.class);
+        if (impact != null) {
+            json.append(",\"cardImpact\":[");
+            sep = "";
+            for (CardImpact.Row row : impact.rows()) {
+                json.append(sep).append("{\"card\":").append(string(row.card))
+                        .append(",\"inHand\":").append(number(row.inHand))
+                        .append(",\"scoreWith\":").append(number(row.scoreWith))
+                        .append(",\"scoreWithout\":").append(number(row.scoreWithout))
+                        .append(",\"copiesDrawn\":").append(number(row.copiesDrawn))
+                        .append(",\"copiesCounted\":").append(number(row.copiesCounted))
+                        .append(",\"patternsWith\":").append(numbers(row.patternWith))
+                        .append(",\"patternsWithout\":").append(numbers(row.patternWithout)).append('}');
+                sep = ",";
+            }
+            json.append(']');
+        }
+        ComboSolver combos = result.collector(ComboSolver.class);
+        if (combos != null) {
+            json.append(",\"combos\":{\"avg\":").append(number(combos.average()))
+                    .append(",\"avgInterval\":").append(interval(combos.average(), combos.stdDev(), result))
+                    .append(",\"median\":").append(number(combos.median()))
+                    .append(",\"stdDev\":").append(number(combos.stdDev()))
+                    .append(",\"target\":").append(number(combos.target()))
+                    .append(",\"targetRate\":").append(number(combos.reachedRate()))
+                    .append('}');
+        }
+        if (result.sensitivity != null) {
+            json.append(",\"sensitivity\":[");
+            sep = "";
+            for (CardSensitivity.Variant v : result.sensitivity.variants) {
+                json.append(sep).append("{\"card\":").append(string(v.card))
+                        .append(",\"change\":").append(string(v.change))
+                        .append(",\"deckSize\":").append(v.deckSize)
+                        .append(",\"avgDelta\":").append(number(v.avgDelta))
+                        .append(",\"patternDeltas\":[");
+                for (int p = 0; p < v.patternDeltas.length; p++)
+                    json.append(p > 0 ? "," : "").append(number(v.patternDeltas[p]));
+                json.append("]}");
+                sep = ",";
+            }
+            json.append(']');
+        }
+        json.append("}\n");
+    }
+
+    private void field(String name, String value) {
+        json.append(',').append(string(name)).append(':').append(value);
+    }
+
+    // Opens the pattern's object; the caller adds its counts and closes it
+    private static String pattern(HandPattern pattern) {
+        StringBuilder roles = new StringBuilder("{");
+        String sep = "";
+        for (Map.Entry<String, Integer> entry : pattern.getRoleCounts().entrySet()) {
+            roles.append(sep).append(string(entry.getKey())).append(':').append(entry.getValue());
+            sep = ",";
+        }
+        return "{\"cards\":" + strings(pattern.getRequiredCards())
+                + ",\"roles\":" + roles.append('}')
+                + ",\"value\":" + number(pattern.getHandValue());
+    }
+
+    private static String hands(List<TopHands.Entry> entries) {
+        StringBuilder sb = new StringBuilder("[");
+        for (TopHands.Entry entry : entries) {
+            if (sb.length() > 1)
+                sb.append(',');
+            sb.append("{\"score\":").append(number(entry.score))
+                    .append(",\"cards\":").append(strings(entry.cards))
+                    .append(",\"count\":").append(entry.count)
+                    .append(",\"probability\":").append(number(entry.probability)).append('}');
+        }
+        return sb.append(']').toString();
+    }
+
+    private static String numbers(double[] values) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < values.length; i++)
+            sb.append(i > 0 ? "," : "").append(number(values[i]));
+        return sb.append(']').toString();
+    }
+
+    // Normal interval around a sampled mean of the result's trials, as a JSON array
+    private static String interval(double mean, double stdDev, SimulationResult result) {
+        double half = Intervals.meanHalfWidth(stdDev, result.trials, Intervals.z(result.confidence));
+        return "[" + number(mean - half) + "," + number(mean + half) + "]";
+    }
+
+    // JSON has no NaN or infinity; those come out as null
+    static String number(double value) {
+        return Double.isFinite(value) ? String.valueOf(value) : "null";
+    }
+
+    static String strings(Collection<String> values) {
+        if (values == null)
+            return "null";
+        StringBuilder sb = new StringBuilder("[");
+        String sep = "";
+        for (String value : values) {
+            sb.append(sep).append(string(value));
+            sep = ",";
+        }
+        return sb.append(']').toString();
+    }
+
+    static String string(String value) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20)
+                        sb.append(String.format("\\u%04x", (int) c));
+                    else
+                        sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
@@ -0,0 +1,297 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+// Hands past the opening draw: turn by turn from the same shuffled deck, with searches.
+//
+// Each trial shuffles lazily, Fisher–Yates style: the opening hand takes the first handSize
+// positions of the deck, each later turn draws one more, and a search moves the named card
+// from the undrawn part of the deck straight into the hand, so later draws come from the
+// thinned deck. At each turn boundary the searches in hand resolve, then the hand is scored
+// and matched against the patterns like an opening hand. Going first, turn 1 is the five-card
+// opening hand; going second, the opening six already include the turn 1 draw.
+//
+// A search (see SimulatorConfig) adds the first of its targets still in the deck, once per
+// copy of the searching card in hand, or once per trial for an OPT card. Searched cards can
+// search in turn.
+//
+// Blocks, streams and merging follow SimulationEngine, so a seed gives the same result on
+// any number of threads. Every array belongs to a block and is reused by its trials; a trial
+// allocates nothing, and each turn only adds the cards that are new to the hand instead of
+// scoring it from scratch. Only plain sampling is supported, and the run does every trial
+// unless it is stopped; start() runs it in the background like SimulationEngine.start.
+public class MultiTurn {
+    static final int MAX_TURNS = 10;
+
+    // Per-turn figures of a multi-turn run, turn 1 first
+    public static class Turns {
+        final int turns;
+        final long trials;
+        final List<HandPattern> patterns;
+        final double[] avg, median, stdDev;
+        final double[] avgHandSize;
+        final long[] withStarter;      // hands holding at least one starter
+        final long[][] patternMatches; // turn -> pattern -> hands matching it
+
+        private Turns(Block block, List<HandPattern> patterns) {
+            turns = block.scores.length;
+            trials = block.scores[0].count();
+            this.patterns = patterns;
+            avg = new double[turns];
+            median = new double[turns];
+            stdDev = new double[turns];
+            avgHandSize = new double[turns];
+            for (int t = 0; t < turns; t++) {
+                avg[t] = block.scores[t].mean();
+                median[t] = block.scores[t].median();
+                stdDev[t] = block.scores[t].stdDev();
+                avgHandSize[t] = (double) block.handCards[t] / Math.max(1, trials);
+            }
+            withStarter = block.withStarter;
+            patternMatches = block.matches;
+        }
+
+        // Pattern -> match count on one turn, in pattern order
+        Map<HandPattern, Long> matchesOn(int turn) {
+            Map<HandPattern, Long> counts = new LinkedHashMap<>();
+            for (int p = 0; p < patterns.size(); p++)
+                counts.put(patterns.get(p), patternMatches[turn][p]);
+            return counts;
+        }
+
+        void write(ReportWriter out, double confidence) {
+            double z = Intervals.z(confidence);
+            for (int t = 0; t < turns; t++) {
+                out.line("");
+                out.heading(String.format("Turn %d", t + 1));
+                out.line(String.format("Average cards in hand: %.2f", avgHandSize[t]));
+                out.line(String.format("Average Hand Score: %.4f +/- %.4f", avg[t],
+                        Intervals.meanHalfWidth(stdDev[t], trials, z)));
+                out.line(String.format("Median: %.3f", median[t]));
+                double[] starter = Intervals.wilson(withStarter[t], trials, z);
+                out.line(String.format("At least one starter: %.2f%% (%.0f%% interval %.2f%% - %.2f%%)",
+                        100.0 * withStarter[t] / trials, confidence * 100, starter[0] * 100, starter[1] * 100));
+                for (int p = 0; p < patterns.size(); p++) {
+                    double[] interval = Intervals.wilson(patternMatches[t][p], trials, z);
+                    out.line(String.format("Pattern %s: %.2f%% (%.0f%% interval %.2f%% - %.2f%%)", patterns.get(p),
+                            100.0 * patternMatches[t][p] / trials, confidence * 100, interval[0] * 100,
+                            interval[1] * 100));
+                }
+            }
+        }
+    }
+
+    // `turns` turns of `settings.trials` trials each. searches maps a card name to the cards it
+    // can add from the deck, in order of preference.
+    public static SimulationResult run(CompiledDeck deck, boolean goingSecond, List<HandPattern> patterns,
+                                       Map<String, List<String>> searches, int turns, RunSettings settings) {
+        return start(deck, goingSecond, patterns, searches, turns, settings).await();
+    }
+
+    // The same in the background; partial results cover the blocks finished so far
+    public static SimulationEngine.Simulation start(CompiledDeck deck, boolean goingSecond, List<HandPattern> patterns,
+                                                    Map<String, List<String>> searches, int turns,
+                                                    RunSettings settings) {
+        if (turns < 1 || turns > MAX_TURNS)
+            throw new IllegalArgumentException("Turns must be between 1 and " + MAX_TURNS);
+        if (settings.rule != null || settings.sampling != HandSampler.Sampling.PLAIN || !settings.collectors.isEmpty()
+                || settings.record != null || settings.replay != null)
+            throw new IllegalArgumentException("A multi-turn run draws a fixed number of plain trials");
+        int handSize = goingSecond ? 6 : 5;
+        if (handSize + turns - 1 > deck.cards.length)
+            throw new IllegalArgumentException("The deck runs out before turn " + turns);
+
+        int[][] targets = targets(deck, searches);
+        int searchers = 0;
+        for (int card : deck.cards) {
+            if (targets[card] != null)
+                searchers++;
+        }
+        // Score range per turn, from the most cards the hand can hold by then
+        ScoreStats[] ranges = new ScoreStats[turns];
+        for (int t = 0; t < turns; t++)
+            ranges[t] = SimulationEngine.scoreRange(deck, Math.min(deck.cards.length, handSize + t + searchers),
+                    goingSecond, patterns);
+        CompiledPatterns compiled = new CompiledPatterns(deck, patterns);
+        int starter = deck.trackedRoleIds()[0];
+
+        BlockRun<Block> run = new BlockRun<>(settings.trials, settings.seed, settings.threads,
+                () -> new Block(ranges, patterns.size()),
+                (block, random, index, blockTrials) -> block.run(deck, goingSecond, handSize, targets, compiled,
+                        starter, random, blockTrials),
+                Block::merge);
+        return new SimulationEngine.Simulation(run, false, Block::merge,
+                block -> block.scores[0].count() > 0 ? result(block, patterns, settings) : null,
+                block -> result(block, patterns, settings));
+    }
+
+    private static SimulationResult result(Block total, List<HandPattern> patterns, RunSettings settings) {
+        SimulationResult result = new SimulationResult();
+        Turns perTurn = new Turns(total, patterns);
+        result.turns = perTurn;
+        result.trials = perTurn.trials;
+        result.requestedTrials = settings.trials;
+        result.seed = settings.seed;
+        result.sampling = HandSampler.Sampling.PLAIN;
+        result.avg = perTurn.avg[0];
+        result.median = perTurn.median[0];
+        result.stdDev = perTurn.stdDev[0];
+        result.variance = perTurn.stdDev[0] * perTurn.stdDev[0];
+        result.distribution = total.scores[0].distribution();
+        result.patternMatches = perTurn.matchesOn(0);
+        // Not tracked across turns
+        result.bestScore = result.worstScore = Double.NaN;
+        result.bestHand = result.worstHand = List.of();
+        result.bestStarters = result.bestExtenders = result.bestHandtraps = result.bestSoftGarnets = Set.of();
+        result.avgStarters = result.avgExtenders = result.avgHandtraps = result.avgSoftGarnets = Double.NaN;
+        return result;
+    }
+
+    // Card id -> ids of the cards it searches, or null; targets not in the deck are left out
+    static int[][] targets(CompiledDeck deck, Map<String, List<String>> searches) {
+        int[][] targets = new int[deck.cardCount()][];
+        for (int card = 0; card < targets.length; card++) {
+            List<String> names = searches.get(deck.names[card]);
+            if (names == null)
+                continue;
+            List<Integer> ids = new ArrayList<>();
+            for (String name : names) {
+                for (int id = 0; id < deck.cardCount(); id++) {
+                    if (deck.names[id].equals(name))
+                        ids.add(id);
+                }
+            }
+            if (!ids.isEmpty())
+                targets[card] = ids.stream().mapToInt(Integer::intValue).toArray();
+        }
+        return targets;
+    }
+
+    // One block of trials
+    static class Block {
+        final ScoreStats[] scores;
+        final long[][] matches;
+        final long[] withStarter;
+        final long[] handCards;
+
+        Block(ScoreStats[] ranges, int patternCount) {
+            scores = new ScoreStats[ranges.length];
+            for (int t = 0; t < ranges.length; t++)
+                scores[t] = ranges[t].emptyCopy();
+            matches = new long[ranges.length][patternCount];
+            withStarter = new long[ranges.length];
+            handCards = new long[ranges.length];
+        }
+
+        void run(CompiledDeck deck, boolean goingSecond, int handSize, int[][] targets, CompiledPatterns patterns,
+                 int starter, SplittableRandom random, int trials) {
+            // The undrawn part of cards[] is cards[drawn..]; its order does not matter, since every
+            // draw picks uniformly from all of it, so it is not restored between trials
+            int[] cards = deck.cards.clone();
+            int n = cards.length;
+            int[] hand = new int[n];
+            boolean[] resolved = new boolean[n];           // hand slot -> its search is used up
+            int[] optSearched = new int[deck.cardCount()]; // card id -> last trial an OPT copy searched
+            double[] weights = deck.weights(goingSecond);
+            boolean[] matched = new boolean[patterns.patternCount];
+            int[] scratch = patterns.newScratch();
+            int turns = scores.length;
+
+            for (int trial = 1; trial <= trials; trial++) {
+                int drawn = 0;
+                int count = 0;
+                int starters = 0;
+                // The hand only grows, so its weights and pattern counts are kept up to date card by
+                // card, in hand order; the score comes out as SimulationEngine.evaluateHand gives it
+                double weightSum = 0;
+                long cardMask = 0, roleMask = 0; // for the combo rules
+                for (int t = 0; t < turns; t++) {
+                    for (int d = t == 0 ? handSize : 1; d > 0 && drawn < n; d--) {
+                        int j = drawn + random.nextInt(n - drawn);
+                        int card = cards[j];
+                        cards[j] = cards[drawn];
+                        cards[drawn++] = card;
+                        resolved[count] = false;
+                        hand[count++] = card;
+                        if (!deck.isOPT[card] || scratch[card] == 0)
+                            weightSum += weights[card];
+                        if (deck.roleOf[card] == starter)
+                            starters++;
+                        cardMask |= 1L << card;
+                        roleMask |= 1L << deck.roleOf[card];
+                        patterns.count(card, scratch);
+                    }
+
+                    // Searches, including those of cards added by earlier searches
+                    for (int i = 0; i < count; i++) {
+                        int card = hand[i];
+                        if (resolved[i] || targets[card] == null)
+                            continue;
+                        resolved[i] = true;
+                        if (deck.isOPT[card]) {
+                            if (optSearched[card] == trial)
+                                continue;
+                            optSearched[card] = trial;
+                        }
+                        int at = find(cards, drawn, targets[card]);
+                        if (at >= 0) {
+                            int found = cards[at];
+                            cards[at] = cards[drawn];
+                            cards[drawn++] = found;
+                            resolved[count] = false;
+                            hand[count++] = found;
+                            if (!deck.isOPT[found] || scratch[found] == 0)
+                                weightSum += weights[found];
+                            if (deck.roleOf[found] == starter)
+                                starters++;
+                            cardMask |= 1L << found;
+                            roleMask |= 1L << deck.roleOf[found];
+                            patterns.count(found, scratch);
+                        }
+                    }
+
+                    double score = weightSum;
+                    if (deck.hasCombos())
+                        score += deck.comboBonus(cardMask, roleMask);
+                    patterns.matchCounted(scratch, matched);
+                    long[] turnMatches = matches[t];
+                    for (int p = 0; p < matched.length; p++) {
+                        if (matched[p]) {
+                            score += patterns.values[p];
+                            turnMatches[p]++;
+                        }
+                    }
+                    scores[t].add(score);
+                    if (starters > 0)
+                        withStarter[t]++;
+                    handCards[t] += count;
+                }
+                patterns.clear(hand, count, scratch);
+            }
+        }
+
+        // Position in cards[from..] of the first target found, trying targets in order, or -1
+        private static int find(int[] cards, int from, int[] targets) {
+            for (int target : targets) {
+                for (int i = from; i < cards.length; i++) {
+                    if (cards[i] == target)
+                        return i;
+                }
+            }
+            return -1;
+        }
+
+        void merge(Block later) {
+            for (int t = 0; t < scores.length; t++) {
+                scores[t].merge(later.scores[t]);
+                withStarter[t] += later.withStarter[t];
+                handCards[t] += later.handCards[t];
+                for (int p = 0; p < matches[t].length; p++)
+                    matches[t][p] += later.matches[t][p];
+            }
+        }
+    }
+}
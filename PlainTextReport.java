@@ -0,0 +1,30 @@
+// A result report as plain text, for the console and files.
+public class PlainTextReport implements ReportWriter {
+    private final StringBuilder text = new StringBuilder();
+
+    public static String of(SimulationResult result) {
+        PlainTextReport report = new PlainTextReport();
+        result.write(report);
+        return report.toString();
+    }
+
+    @Override
+    public void title(String text) {
+        this.text.append(text).append("\n\n");
+    }
+
+    @Override
+    public void heading(String text) {
+        this.text.append(text).append('\n');
+    }
+
+    @Override
+    public void line(String text) {
+        this.text.append(text).append('\n');
+    }
+
+    @Override
+    public String toString() {
+        return text.toString();
+    }
+}
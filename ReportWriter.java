@@ -0,0 +1,8 @@
+// Where a result's report goes: a styled text pane in the GUIs, plain text elsewhere.
+public interface ReportWriter {
+    void title(String text);
+
+    void heading(String text);
+
+    void line(String text);
+}
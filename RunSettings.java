@@ -0,0 +1,63 @@
+import java.util.ArrayList;
+import java.util.List;
+
+// How a sampled run is carried out: everything besides the deck, the turn and the patterns.
+// The defaults are a plain 100,000-trial run on every core with a random seed.
+public class RunSettings {
+    long trials = 100000;       // the cap when a stopping rule is set
+    long seed = SimulationEngine.randomSeed();
+    int threads = SimulationEngine.defaultThreads();
+    StoppingRule rule = null;   // null to run every trial
+    HandSampler.Sampling sampling = HandSampler.Sampling.PLAIN;
+    List<StatCollector> collectors = new ArrayList<>(); // extra statistics, after the standard ones
+    HandStore record = null;    // save the drawn hands here
+    HandStore replay = null;    // score these saved hands instead of drawing; overrides trials, seed and sampling
+    int[] slots = null;         // slot id per deck position, to draw by slot (see HandSampler.drawBySlot)
+
+    public RunSettings trials(long trials) {
+        this.trials = trials;
+        return this;
+    }
+
+    public RunSettings seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public RunSettings threads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    public RunSettings stopWhen(StoppingRule rule) {
+        this.rule = rule;
+        return this;
+    }
+
+    public RunSettings sampling(HandSampler.Sampling sampling) {
+        this.sampling = sampling;
+        return this;
+    }
+
+    public RunSettings collect(StatCollector collector) {
+        collectors.add(collector);
+        return this;
+    }
+
+    public RunSettings record(HandStore store) {
+        this.record = store;
+        return this;
+    }
+
+    // Draw plain hands by slot id, so decks of different sizes that share slot ids get the same
+    // hands wherever they hold the same slots (see DeckOptimizer.Slots)
+    public RunSettings slots(int[] slotIds) {
+        this.slots = slotIds;
+        return this;
+    }
+
+    public RunSettings replay(HandStore store) {
+        this.replay = store;
+        return this;
+    }
+}
@@ -0,0 +1,158 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Memoized hand scores, shared by all worker threads of every run on one compiled deck.
+//
+// A hand is keyed by the multiset of its card classes (see CompiledDeck.cardClasses). Cards
+// of one class score and match patterns identically, so the key determines the score and
+// the pattern-match bitmask. When the deck has few enough classes the key is the packed
+// vector of per-class copy counts, which is just the sum of one constant per card and needs
+// no sorting; otherwise it is the sorted class ids, 6 bits each. There are only a few
+// thousand to a few hundred thousand such hands, so after a short warm-up nearly every
+// trial is a single probe.
+//
+// The table is open addressing over one AtomicLongArray, insert-only and fixed size. Each
+// slot is {key, score bits, mask, unused} so a probe touches a single cache line. A thread
+// claims an empty slot by CAS-ing in its key with the PENDING bit set, writes the score and
+// mask, then publishes the plain key; a reader that sees the plain key is guaranteed to see
+// both values. Pending slots read as misses. When the probe window is full the hand is
+// simply not cached.
+//
+// Scores to cache must be computed on the hand sorted by class (see canonicalize), so a
+// hand gets the same floating-point sum whichever thread computed it first, and seeded
+// runs stay identical across thread counts.
+public class ScoreCache {
+    static final int CAPACITY = 1 << 18;
+    static final int MAX_PROBES = 16;
+    static final int BITS_PER_CARD = 6;
+    private static final long PENDING = 1L << 63;
+
+    final String signature;
+    private final int[] classOf;
+    private final long[] unit; // card id -> its class's count field, or null for sorted keys
+    private final AtomicLongArray table = new AtomicLongArray(CAPACITY * 4);
+
+    private ScoreCache(String signature, int[] classOf, int handSize) {
+        this.signature = signature;
+        this.classOf = classOf;
+        int countBits = 32 - Integer.numberOfLeadingZeros(handSize);
+        int classCount = Arrays.stream(classOf).max().orElse(-1) + 1;
+        if (classCount * countBits <= 63) {
+            unit = new long[classOf.length];
+            for (int card = 0; card < classOf.length; card++)
+                unit[card] = 1L << (classOf[card] * countBits);
+        } else {
+            unit = null;
+        }
+    }
+
+    // A cache for these patterns, or null when the hands cannot be keyed in 64 bits or the
+    // matches do not fit a 64-bit mask
+    static ScoreCache create(CompiledDeck deck, int handSize, boolean goingSecond, List<HandPattern> patterns) {
+        if (patterns.size() > 64 || handSize * BITS_PER_CARD > 63)
+            return null;
+        int[] classOf = deck.cardClasses(patterns);
+        for (int k : classOf) {
+            if (k + 1 >= 1 << BITS_PER_CARD)
+                return null;
+        }
+        return new ScoreCache(signature(handSize, goingSecond, patterns), classOf, handSize);
+    }
+
+    // A cache keyed by the cards themselves, one class per card id, for values that depend on
+    // exactly which cards are in hand (see ComboSolver); null when the hands do not fit a key
+    static ScoreCache byCard(int cardCount, int handSize) {
+        if (handSize * BITS_PER_CARD > 63 || cardCount + 1 >= 1 << BITS_PER_CARD)
+            return null;
+        int[] classOf = new int[cardCount];
+        for (int card = 0; card < cardCount; card++)
+            classOf[card] = card;
+        return new ScoreCache("cards " + handSize, classOf, handSize);
+    }
+
+    // Everything besides the compiled deck that a cached score depends on
+    static String signature(int handSize, boolean goingSecond, List<HandPattern> patterns) {
+        StringBuilder sb = new StringBuilder().append(handSize).append(goingSecond ? " second" : " first");
+        for (HandPattern pattern : patterns) {
+            sb.append('\n').append(pattern.getRequiredCards()).append(new TreeMap<>(pattern.getRoleCounts()))
+                    .append(pattern.getHandValue());
+        }
+        return sb.toString();
+    }
+
+    // The hand's key, never 0; the hand is not changed. scratch holds at least handSize cards
+    // and may be overwritten, so sorted keys allocate nothing per trial.
+    long key(int[] hand, int handSize, int[] scratch) {
+        long key = 0;
+        if (unit != null) {
+            for (int i = 0; i < handSize; i++)
+                key += unit[hand[i]];
+            return key;
+        }
+        System.arraycopy(hand, 0, scratch, 0, handSize);
+        canonicalize(scratch, handSize);
+        for (int i = 0; i < handSize; i++)
+            key = key << BITS_PER_CARD | (classOf[scratch[i]] + 1);
+        return key;
+    }
+
+    // Sorts hand[0..handSize) by card class, the order cached scores are computed in
+    void canonicalize(int[] hand, int handSize) {
+        for (int i = 1; i < handSize; i++) {
+            int card = hand[i];
+            int k = classOf[card];
+            int j = i - 1;
+            while (j >= 0 && classOf[hand[j]] > k) {
+                hand[j + 1] = hand[j];
+                j--;
+            }
+            hand[j + 1] = card;
+        }
+    }
+
+    // Slot holding the key, or -1 if it is not (yet) cached
+    int find(long key) {
+        int slot = slotOf(key);
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            long k = table.get(slot * 4);
+            if (k == key)
+                return slot;
+            if (k == 0)
+                return -1;
+            slot = (slot + 1) & (CAPACITY - 1);
+        }
+        return -1;
+    }
+
+    // Only valid for a slot returned by find, whose key read orders these reads after the writes
+    double score(int slot) {
+        return Double.longBitsToDouble(table.getPlain(slot * 4 + 1));
+    }
+
+    long mask(int slot) {
+        return table.getPlain(slot * 4 + 2);
+    }
+
+    void put(long key, double score, long mask) {
+        int slot = slotOf(key);
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int at = slot * 4;
+            if (table.get(at) == 0 && table.compareAndSet(at, 0, key | PENDING)) {
+                table.setPlain(at + 1, Double.doubleToRawLongBits(score));
+                table.setPlain(at + 2, mask);
+                table.set(at, key);
+                return;
+            }
+            if ((table.get(at) & ~PENDING) == key)
+                return; // another thread got there first
+            slot = (slot + 1) & (CAPACITY - 1);
+        }
+    }
+
+    private static int slotOf(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 40) & (CAPACITY - 1);
+    }
+}
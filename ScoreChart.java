@@ -0,0 +1,159 @@
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.image.BufferedImage;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
+
+// Histogram of a result's score distribution, with the median marked and the bars below
+// the brick threshold in red.
+//
+// show() is called with every partial result of a long run, so the chart is drawn into an
+// image on a background thread and the EDT only swaps in the finished image and paints it.
+// Requests that come in while a chart is being drawn replace one another; only the newest
+// is drawn next, so a slow draw never queues up stale ones.
+public class ScoreChart extends JComponent {
+    static final int MAX_BARS = 60;
+    private static final int MARGIN = 30;
+    private static final Color BAR = new Color(70, 110, 180);
+    private static final Color BRICK = new Color(200, 70, 60);
+
+    // What to draw, taken on the EDT
+    private static class Request {
+        final NavigableMap<Double, Double> distribution;
+        final double median, brickBelow;
+        final int width, height;
+
+        Request(SimulationResult result, int width, int height) {
+            this.distribution = result.distribution;
+            this.median = result.median;
+            this.brickBelow = result.brickBelow;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    private final ExecutorService renderer = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "score-chart");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicReference<Request> pending = new AtomicReference<>();
+    private SimulationResult shown; // EDT only, redrawn on resize
+    private BufferedImage image;    // EDT only
+
+    public ScoreChart() {
+        setPreferredSize(new Dimension(400, 180));
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                request();
+            }
+        });
+    }
+
+    // Call on the EDT; the result's distribution must not change afterwards
+    public void show(SimulationResult result) {
+        shown = result;
+        request();
+    }
+
+    private void request() {
+        if (shown == null || getWidth() <= 0 || getHeight() <= 0)
+            return;
+        if (pending.getAndSet(new Request(shown, getWidth(), getHeight())) == null)
+            renderer.execute(this::renderPending);
+    }
+
+    private void renderPending() {
+        BufferedImage rendered = render(pending.getAndSet(null));
+        SwingUtilities.invokeLater(() -> {
+            image = rendered;
+            repaint();
+        });
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        if (image != null)
+            g.drawImage(image, 0, 0, null);
+    }
+
+    private static BufferedImage render(Request request) {
+        BufferedImage image = new BufferedImage(request.width, request.height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, request.width, request.height);
+        g.setColor(Color.DARK_GRAY);
+        FontMetrics metrics = g.getFontMetrics();
+        NavigableMap<Double, Double> distribution = request.distribution;
+        if (distribution == null || distribution.isEmpty()) {
+            g.drawString("No score distribution", MARGIN, request.height / 2);
+            g.dispose();
+            return image;
+        }
+
+        // Bars one score step wide, the smallest gap between two scores, widened to fit MAX_BARS
+        double low = distribution.firstKey(), high = distribution.lastKey();
+        double step = high - low;
+        Double previous = null;
+        for (double score : distribution.keySet()) {
+            if (previous != null)
+                step = Math.min(step, score - previous);
+            previous = score;
+        }
+        step = Math.max(step, ScoreStats.RESOLUTION);
+        int bars = (int) Math.round((high - low) / step) + 1;
+        if (bars > MAX_BARS) {
+            step *= Math.ceil((double) bars / MAX_BARS);
+            bars = (int) Math.round((high - low) / step) + 1;
+        }
+        double[] heights = new double[bars];
+        for (Map.Entry<Double, Double> entry : distribution.entrySet())
+            heights[Math.min(bars - 1, (int) Math.round((entry.getKey() - low) / step))] += entry.getValue();
+        double tallest = 0.0;
+        for (double h : heights)
+            tallest = Math.max(tallest, h);
+
+        int left = MARGIN, right = request.width - MARGIN / 2;
+        int top = MARGIN / 2 + metrics.getHeight(), bottom = request.height - MARGIN;
+        double barWidth = (double) (right - left) / bars;
+        for (int i = 0; i < bars; i++) {
+            int x = left + (int) (i * barWidth);
+            int w = Math.max(1, (int) ((i + 1) * barWidth) - (int) (i * barWidth) - 1);
+            int h = (int) Math.round(heights[i] / tallest * (bottom - top));
+            g.setColor(low + i * step < request.brickBelow - 1e-9 ? BRICK : BAR);
+            g.fillRect(x, bottom - h, w, h);
+        }
+
+        g.setColor(Color.DARK_GRAY);
+        g.drawLine(left, bottom, right, bottom);
+        g.drawString(String.format("%.3f", low), left, bottom + metrics.getHeight());
+        String last = String.format("%.3f", high);
+        g.drawString(last, right - metrics.stringWidth(last), bottom + metrics.getHeight());
+        g.drawString(String.format("%.2f%% of hands", tallest * 100), left, top - metrics.getDescent());
+
+        if (!Double.isNaN(request.median)) {
+            int x = left + (int) (((request.median - low) / step + 0.5) * barWidth);
+            g.setStroke(new BasicStroke(1f, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 10f, new float[] { 4f, 4f }, 0f));
+            g.drawLine(x, top, x, bottom);
+            String label = String.format("median %.3f", request.median);
+            g.drawString(label, Math.min(x + 4, right - metrics.stringWidth(label)), top - metrics.getDescent());
+        }
+        g.dispose();
+        return image;
+    }
+}
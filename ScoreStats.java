@@ -0,0 +1,200 @@
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+// Constant-memory statistics over a stream of hand scores.
+//
+// Mean and variance use Welford's update, and the median, percentiles and distribution come
+// from a histogram with fixed-width buckets over the range of scores a hand can possibly
+// reach. Buckets are RESOLUTION wide unless the range needs more than MAX_BUCKETS of them,
+// in which case they widen to fit. When every score lies on the RESOLUTION grid and the
+// buckets are not widened, each distinct score gets its own bucket and the median is exact;
+// otherwise (weights like 0.3333, or a very wide range) the median, percentiles and
+// distribution report bucket values, within half a bucket width of the true scores.
+//
+// Two instances over the same range can be merged, which is how the per-block stats of a
+// parallel run are combined.
+public class ScoreStats {
+    static final double RESOLUTION = 0.001;
+    static final int MAX_BUCKETS = 1 << 20;
+
+    private final double low;
+    private final double width;
+    private final long[] buckets;
+
+    private long count = 0;
+    private double mean = 0.0;
+    private double m2 = 0.0; // sum of squared differences from the mean
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public ScoreStats(double low, double high) {
+        double span = Math.max(0.0, high - low);
+        int n = (int) Math.min(MAX_BUCKETS, Math.ceil(span / RESOLUTION) + 1);
+        this.low = low;
+        this.width = n > 1 ? Math.max(RESOLUTION, span / (n - 1)) : RESOLUTION;
+        this.buckets = new long[n];
+    }
+
+    // The range of scores the buckets cover
+    public double low() {
+        return low;
+    }
+
+    public double high() {
+        return low + width * (buckets.length - 1);
+    }
+
+    // Empty stats over the same range, for a new block
+    public ScoreStats emptyCopy() {
+        return new ScoreStats(low, high());
+    }
+
+    public void add(double score) {
+        count++;
+        double delta = score - mean;
+        mean += delta / count;
+        m2 += delta * (score - mean);
+        if (score < min)
+            min = score;
+        if (score > max)
+            max = score;
+        buckets[bucketOf(score)]++;
+    }
+
+    // Adds `copies` samples of the same score at once (the weighted form of Welford's update)
+    public void add(double score, long copies) {
+        if (copies <= 0)
+            return;
+        count += copies;
+        double delta = score - mean;
+        mean += delta * copies / count;
+        m2 += copies * delta * (score - mean);
+        if (score < min)
+            min = score;
+        if (score > max)
+            max = score;
+        buckets[bucketOf(score)] += copies;
+    }
+
+    // Chan et al. parallel combination of two Welford states
+    public void merge(ScoreStats other) {
+        if (other.count == 0)
+            return;
+        if (buckets.length != other.buckets.length || low != other.low)
+            throw new IllegalArgumentException("Cannot merge score stats over different ranges");
+        if (count == 0) {
+            count = other.count;
+            mean = other.mean;
+            m2 = other.m2;
+            min = other.min;
+            max = other.max;
+            System.arraycopy(other.buckets, 0, buckets, 0, buckets.length);
+            return;
+        }
+        long total = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / total;
+        m2 += other.m2 + delta * delta * ((double) count * other.count / total);
+        count = total;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        for (int i = 0; i < buckets.length; i++)
+            buckets[i] += other.buckets[i];
+    }
+
+    private int bucketOf(double score) {
+        long i = Math.round((score - low) / width);
+        return (int) Math.max(0, Math.min(buckets.length - 1, i));
+    }
+
+    private double valueOf(int bucket) {
+        return low + bucket * width;
+    }
+
+    // Score of the k-th smallest sample (0-based)
+    private double kth(long k) {
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen > k)
+                return valueOf(i);
+        }
+        return max;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public double mean() {
+        return count > 0 ? mean : Double.NaN;
+    }
+
+    // Population variance, as the results have always reported it
+    public double variance() {
+        return count > 0 ? m2 / count : Double.NaN;
+    }
+
+    public double stdDev() {
+        return Math.sqrt(variance());
+    }
+
+    public double min() {
+        return min;
+    }
+
+    public double max() {
+        return max;
+    }
+
+    // Score at quantile q in [0, 1], by the nearest-rank rule
+    public double quantile(double q) {
+        if (count == 0)
+            return Double.NaN;
+        long k = (long) Math.ceil(q * count) - 1;
+        return kth(Math.max(0, Math.min(count - 1, k)));
+    }
+
+    // Fraction of the samples at each score that occurred, lowest first
+    public NavigableMap<Double, Double> distribution() {
+        NavigableMap<Double, Double> distribution = new TreeMap<>();
+        for (int i = 0; i < buckets.length; i++) {
+            if (buckets[i] > 0)
+                distribution.put(Math.round(valueOf(i) * 1e9) / 1e9, (double) buckets[i] / count);
+        }
+        return distribution;
+    }
+
+    public double median() {
+        if (count == 0)
+            return Double.NaN;
+        long mid = count / 2;
+        return count % 2 == 0 ? (kth(mid - 1) + kth(mid)) / 2.0 : kth(mid);
+    }
+
+    // quantile(q) over a distribution as distribution() gives it, or an exact one whose values
+    // are probabilities; NaN if it is empty or missing
+    static double quantile(NavigableMap<Double, Double> distribution, double q) {
+        return firstReaching(distribution, q, false);
+    }
+
+    // median() over such a distribution: halfway between the lowest score that reaches half the
+    // weight and the lowest that passes it, which differ only when exactly half lies at or below
+    static double median(NavigableMap<Double, Double> distribution) {
+        return (firstReaching(distribution, 0.5, false) + firstReaching(distribution, 0.5, true)) / 2.0;
+    }
+
+    // Lowest score whose cumulative share reaches q, or passes it if `past`
+    private static double firstReaching(NavigableMap<Double, Double> distribution, double q, boolean past) {
+        if (distribution == null || distribution.isEmpty())
+            return Double.NaN;
+        double cumulative = 0.0;
+        for (Map.Entry<Double, Double> entry : distribution.entrySet()) {
+            cumulative += entry.getValue();
+            if (past ? cumulative > q + 1e-9 : cumulative >= q - 1e-9)
+                return entry.getKey();
+        }
+        return distribution.lastKey();
+    }
+}
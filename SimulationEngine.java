@@ -0,0 +1,428 @@
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Runs hand simulations across all cores. Swing-free: the GUIs, the Analyzer and any
+// headless caller all go through start/run here.
+//
+// Trials are cut into fixed-size blocks (see BlockRun). Every block gets its own random
+// stream derived from the run seed and the block index, fills its own accumulator, and the
+// accumulators are merged in block order. Because neither the streams nor the merge order
+// depend on which thread ran a block, a given seed gives bit-identical results for any
+// thread count.
+public class SimulationEngine {
+    // Trial cap for a time-budget run, which stops on the clock instead
+    static final long UNBOUNDED_TRIALS = 1L << 40;
+
+    public static long randomSeed() {
+        return new SplittableRandom().nextLong();
+    }
+
+    public static int defaultThreads() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    public static SimulationResult run(CompiledDeck deck, long trials, boolean goingSecond,
+                                       List<HandPattern> patterns, long seed, int threads) {
+        return start(deck, trials, goingSecond, patterns, seed, threads).await();
+    }
+
+    public static SimulationResult run(CompiledDeck deck, boolean goingSecond, List<HandPattern> patterns,
+                                       RunSettings settings) {
+        return start(deck, goingSecond, patterns, settings).await();
+    }
+
+    public static Simulation start(CompiledDeck deck, long trials, boolean goingSecond,
+                                   List<HandPattern> patterns, long seed, int threads) {
+        return start(deck, goingSecond, patterns, new RunSettings().trials(trials).seed(seed).threads(threads));
+    }
+
+    public static Simulation start(CompiledDeck deck, boolean goingSecond, List<HandPattern> patterns,
+                                   RunSettings settings) {
+        StoppingRule rule = settings.rule;
+        HandStore record = settings.record;
+        HandStore replay = settings.replay;
+        long seed = replay != null ? replay.seed : settings.seed;
+        HandSampler.Sampling sampling = replay != null ? replay.sampling : settings.sampling;
+        int handSize = goingSecond ? 6 : 5; // 6 cards for going second, 5 for going first
+        boolean timed = rule != null && rule.timeLimitSeconds > 0;
+        checkStores(deck, handSize, settings, timed);
+        int[] slots = settings.slots;
+        if (slots != null && (slots.length != deck.cards.length || sampling != HandSampler.Sampling.PLAIN
+                || replay != null))
+            throw new IllegalArgumentException("Drawing by slot needs an id for every card and plain sampling");
+
+        DeckSetup setup = new DeckSetup(deck, goingSecond, patterns, settings.collectors);
+        long trials = replay != null ? replay.hands() : timed ? UNBOUNDED_TRIALS : settings.trials;
+        BlockRun<BlockStats> run = new BlockRun<>(trials, seed, settings.threads, setup::newStats,
+                (acc, random, block, blockTrials) -> setup.runBlock(acc, sampling, slots, random, blockTrials,
+                        replay != null ? replay.readBlock(block, blockTrials) : null,
+                        record != null ? hands -> record.writeBlock(block, hands) : null),
+                BlockStats::merge,
+                rule != null && rule.hasPrecisionTarget()
+                        ? stats -> rule.isMet(stats.scores().stdDev(), stats.scores().count(), stats.patternMatches())
+                        : null,
+                timed ? rule.timeLimitSeconds : 0);
+        return new Simulation(run, timed, BlockStats::mergeLive,
+                stats -> stats.scores().count() > 0 ? describe(result(stats), run, settings, seed, sampling, timed) : null,
+                stats -> {
+                    // A recording is saved here, or dropped if the run was stopped by hand
+                    SimulationResult result = describe(result(stats), run, settings, seed, sampling, timed);
+                    if (record != null) {
+                        if (run.isCancelled() && !run.isTargetReached())
+                            record.discard();
+                        else
+                            record.finish(result.trials);
+                    }
+                    return result;
+                });
+    }
+
+    // A simulation running in the background. Poll it for progress and partial results,
+    // cancel it, or wait for the final result.
+    public static class Simulation {
+        private final BlockRun<?> run;
+        private final boolean timed;
+        private final Supplier<SimulationResult> partial;
+        private final Supplier<SimulationResult> finish;
+
+        // Any block run seen as a simulation: `partial` reads a result off a snapshot folded with
+        // `liveMerge` (null while there is nothing to show) and `finish` the final result off
+        // the folded blocks
+        <A> Simulation(BlockRun<A> run, boolean timed, BiConsumer<A, A> liveMerge,
+                       Function<A, SimulationResult> partial, Function<A, SimulationResult> finish) {
+            this.run = run;
+            this.timed = timed;
+            this.partial = () -> partial.apply(run.snapshot(liveMerge));
+            this.finish = () -> finish.apply(run.await());
+        }
+
+        // Result over the trials finished so far, or null if none are. Collectors that stay out
+        // of snapshots (see StatCollector.inSnapshots) are empty in it.
+        public SimulationResult snapshot() {
+            return partial.get();
+        }
+
+        public SimulationResult await() {
+            return finish.get();
+        }
+
+        public void cancel() {
+            run.cancel();
+        }
+
+        public boolean isDone() {
+            return run.isDone();
+        }
+
+        public long completedTrials() {
+            return run.completedTrials();
+        }
+
+        public long totalTrials() {
+            return run.totalTrials();
+        }
+
+        public double elapsedSeconds() {
+            return run.elapsedSeconds();
+        }
+
+        // Fraction of the run done: of the time budget for a timed run, otherwise of the trials
+        public double progress() {
+            if (isTimed())
+                return run.isDone() ? 1.0 : run.timeLimitFraction();
+            return (double) run.completedTrials() / Math.max(1, run.totalTrials());
+        }
+
+        public boolean isTimed() {
+            return timed;
+        }
+    }
+
+    private static void checkStores(CompiledDeck deck, int handSize, RunSettings settings, boolean timed) {
+        HandStore record = settings.record, replay = settings.replay;
+        if (record != null && replay != null)
+            throw new IllegalArgumentException("A run can record its hands or replay saved ones, not both");
+        HandStore store = record != null ? record : replay;
+        if (store != null && (!store.matches(deck) || store.handSize != handSize))
+            throw new IllegalArgumentException("The saved hands are for another deck list or turn");
+        if (record != null && (timed || record.hands() < settings.trials))
+            throw new IllegalArgumentException("Recording needs room for every trial, and no time limit");
+    }
+
+    // What the collectors of a run report
+    static SimulationResult result(BlockStats stats) {
+        SimulationResult result = new SimulationResult();
+        for (StatCollector collector : stats.collectors) {
+            collector.report(result);
+            result.collectors.add(collector);
+        }
+        return result;
+    }
+
+    // Adds how a run was drawn and why it stopped to its result
+    static SimulationResult describe(SimulationResult result, BlockRun<?> run, RunSettings settings, long seed,
+                                     HandSampler.Sampling sampling, boolean timed) {
+        StoppingRule rule = settings.rule;
+        long trials = result.trials;
+        result.seed = seed;
+        result.sampling = sampling;
+        if (settings.replay != null)
+            result.handStore = "Replayed saved hands from " + settings.replay.path().getFileName();
+        else if (settings.record != null)
+            result.handStore = "Hands saved to " + settings.record.path().getFileName();
+        result.requestedTrials = timed ? trials : run.totalTrials();
+        if (rule != null) {
+            result.confidence = rule.confidence;
+            if (run.isTargetReached())
+                result.stopReason = "Target reached: " + rule.describe();
+            else if (timed && run.isDone())
+                result.stopReason = "Stopped after " + rule.describe();
+            else if (rule.hasPrecisionTarget() && run.isDone() && trials == run.totalTrials())
+                result.stopReason = "Trial cap reached before " + rule.describe();
+        }
+        return result;
+    }
+
+    // What every block of one deck's trials shares: the collectors to copy, the compiled
+    // patterns, the score cache and the tracked roles
+    static class DeckSetup {
+        final CompiledDeck deck;
+        final boolean goingSecond;
+        final int handSize;
+        private final int patternCount;
+        private final StatCollector[] collectors;
+        private final CompiledPatterns compiledPatterns;
+        private final ScoreCache cache;
+        private final int[] tracked;
+
+        DeckSetup(CompiledDeck deck, boolean goingSecond, List<HandPattern> patterns, List<StatCollector> extra) {
+            this.deck = deck;
+            this.goingSecond = goingSecond;
+            this.handSize = goingSecond ? 6 : 5;
+            this.patternCount = patterns.size();
+            this.tracked = deck.trackedRoleIds();
+
+            // The standard statistics first, at the indexes BlockStats expects, then any extras
+            List<StatCollector> prototypes = new ArrayList<>();
+            prototypes.add(new StatCollectors.ScoreMoments(scoreRange(deck, handSize, goingSecond, patterns)));
+            prototypes.add(new StatCollectors.PatternCounts(patterns));
+            prototypes.add(new StatCollectors.RoleAverages(deck));
+            prototypes.add(new StatCollectors.BestWorst(deck, tracked));
+            prototypes.addAll(extra);
+            this.collectors = prototypes.toArray(new StatCollector[0]);
+            this.compiledPatterns = new CompiledPatterns(deck, patterns);
+            this.cache = deck.scoreCache(handSize, goingSecond, patterns);
+        }
+
+        BlockStats newStats() {
+            return new BlockStats(collectors);
+        }
+
+        // One block of this deck's trials into `stats` (see BlockStats.runBlock)
+        void runBlock(BlockStats stats, HandSampler.Sampling sampling, int[] slots, SplittableRandom random,
+                      int trials, byte[] stored, Consumer<byte[]> save) {
+            stats.runBlock(new Trial(deck, goingSecond, handSize, patternCount), compiledPatterns, cache, tracked,
+                    sampling, slots, random, trials, stored, save);
+        }
+    }
+
+    // Lowest and highest score any hand can reach, which sizes the score histogram
+    static ScoreStats scoreRange(CompiledDeck deck, int handSize, boolean goingSecond, List<HandPattern> patterns) {
+        double lowestWeight = 0.0, highestWeight = 0.0;
+        for (double w : deck.weights(goingSecond)) {
+            lowestWeight = Math.min(lowestWeight, w);
+            highestWeight = Math.max(highestWeight, w);
+        }
+        double low = handSize * lowestWeight, high = handSize * highestWeight;
+        for (HandPattern pattern : patterns) {
+            if (pattern.getHandValue() < 0)
+                low += pattern.getHandValue();
+            else
+                high += pattern.getHandValue();
+        }
+        double[] combos = deck.comboBonusRange();
+        low += combos[0];
+        high += combos[1];
+        return new ScoreStats(low, high);
+    }
+
+    // The collectors of one block of trials, merged in block order afterwards.
+    // The four standard ones always come first, in the order DeckSetup adds them, and are
+    // also held by their own type so the hot loop calls them directly; a single call site
+    // shared by every kind of collector would stop the JIT from inlining any of them.
+    static class BlockStats {
+        final StatCollector[] collectors;
+        private final StatCollectors.ScoreMoments scores;
+        private final StatCollectors.PatternCounts patternCounts;
+        private final StatCollectors.RoleAverages roles;
+        private final StatCollectors.BestWorst bestWorst;
+
+        BlockStats(StatCollector[] prototypes) {
+            collectors = new StatCollector[prototypes.length];
+            for (int c = 0; c < prototypes.length; c++)
+                collectors[c] = prototypes[c].newInstance();
+            scores = (StatCollectors.ScoreMoments) collectors[0];
+            patternCounts = (StatCollectors.PatternCounts) collectors[1];
+            roles = (StatCollectors.RoleAverages) collectors[2];
+            bestWorst = (StatCollectors.BestWorst) collectors[3];
+        }
+
+        ScoreStats scores() {
+            return scores.scores;
+        }
+
+        long[] patternMatches() {
+            return patternCounts.matches;
+        }
+
+        // The one pass over each trial: draw (or take the next of the `stored` hands), score and
+        // match (through the cache when there is one), find the distinct cards, then hand the
+        // trial to every collector. `save`, when given, gets the block's hands at the end.
+        void runBlock(Trial trial, CompiledPatterns patterns, ScoreCache cache, int[] tracked,
+                      HandSampler.Sampling sampling, int[] slots, SplittableRandom random, int trials, byte[] stored,
+                      Consumer<byte[]> save) {
+            CompiledDeck deck = trial.deck;
+            int handSize = trial.handSize;
+            HandSampler sampler = null;
+            StratifiedSampler stratified = null;
+            int[] mirror = null;
+            byte[] drawn = save != null ? new byte[trials * handSize] : null;
+            if (stored != null) {
+                // nothing to set up
+            } else if (sampling == HandSampler.Sampling.STRATIFIED) {
+                stratified = new StratifiedSampler(deck.cards, deck.hasRole(tracked[0]), handSize);
+                stratified.startBlock(random, trials);
+            } else if (sampling == HandSampler.Sampling.ANTITHETIC) {
+                sampler = new HandSampler(deck.cardsByWeight(trial.goingSecond), handSize);
+                mirror = new int[handSize];
+            } else {
+                sampler = new HandSampler(deck.cards, handSize);
+            }
+            int[] hand = trial.hand;
+            boolean[] matched = trial.matched;
+            int[] canonical = new int[handSize];
+            int[] scratch = patterns.newScratch();
+            boolean wide = matched.length > 64; // then matches are only in matched[], and there is no cache
+
+            for (int i = 0; i < trials; i++) {
+                if (stored != null) {
+                    for (int k = 0; k < handSize; k++)
+                        hand[k] = stored[i * handSize + k] & 0xFF;
+                } else if (stratified != null)
+                    stratified.draw(random, hand);
+                else if (mirror != null && i % 2 == 1)
+                    System.arraycopy(mirror, 0, hand, 0, handSize); // second hand of the pair
+                else if (mirror != null && i + 1 < trials)
+                    sampler.drawAntithetic(random, handSize, hand, mirror);
+                else if (slots != null)
+                    sampler.drawBySlot(random, handSize, hand, slots);
+                else
+                    sampler.draw(random, handSize, hand);
+                if (drawn != null) {
+                    for (int k = 0; k < handSize; k++)
+                        drawn[i * handSize + k] = (byte) hand[k];
+                }
+
+                long key = cache != null ? cache.key(hand, handSize, canonical) : 0;
+                int slot = cache != null ? cache.find(key) : -1;
+                if (slot >= 0) {
+                    trial.score = cache.score(slot);
+                    trial.matchMask = cache.mask(slot);
+                } else {
+                    int[] scored = hand;
+                    if (cache != null) {
+                        System.arraycopy(hand, 0, canonical, 0, handSize);
+                        cache.canonicalize(canonical, handSize);
+                        scored = canonical;
+                    }
+                    trial.score = evaluateHand(deck, scored, handSize, trial.goingSecond, patterns, scratch, matched);
+                    if (!wide) {
+                        long mask = 0;
+                        for (int p = 0; p < matched.length; p++) {
+                            if (matched[p])
+                                mask |= 1L << p;
+                        }
+                        trial.matchMask = mask;
+                    }
+                    if (cache != null)
+                        cache.put(key, trial.score, trial.matchMask);
+                }
+                trial.findDistinct();
+
+                scores.accept(trial);
+                patternCounts.accept(trial);
+                roles.accept(trial);
+                bestWorst.accept(trial);
+                for (int c = 4; c < collectors.length; c++)
+                    collectors[c].accept(trial);
+            }
+            if (save != null)
+                save.accept(drawn);
+        }
+
+        // Fold a later block into this one
+        void merge(BlockStats later) {
+            for (int c = 0; c < collectors.length; c++)
+                collectors[c].merge(later.collectors[c]);
+        }
+
+        // The same for a snapshot, leaving out the collectors that stay out of snapshots
+        void mergeLive(BlockStats later) {
+            for (int c = 0; c < collectors.length; c++) {
+                if (collectors[c].inSnapshots())
+                    collectors[c].merge(later.collectors[c]);
+            }
+        }
+    }
+
+    static Set<String> cardsWithRole(CompiledDeck deck, int[] hand, int handSize, int role) {
+        Set<String> cards = new HashSet<>();
+        for (int i = 0; i < handSize; i++) {
+            if (deck.roleOf[hand[i]] == role)
+                cards.add(deck.names[hand[i]]);
+        }
+        return cards;
+    }
+
+    // Evaluate a hand of compiled card ids. Also fills matched[p] for every pattern, so callers
+    // can count matches without checking the patterns again; scratch is from patterns.newScratch().
+    public static double evaluateHand(CompiledDeck deck, int[] hand, int handSize, boolean goingSecond,
+                                      CompiledPatterns patterns, int[] scratch, boolean[] matched) {
+        double[] weights = deck.weights(goingSecond);
+        double score = 0;
+
+        for (int i = 0; i < handSize; i++) {
+            int card = hand[i];
+            if (!deck.isOPT[card] || !seenEarlier(hand, i, card)) {
+                score += weights[card];
+            }
+        }
+
+        if (deck.hasCombos())
+            score += deck.comboBonus(hand, handSize);
+
+        patterns.match(hand, handSize, scratch, matched);
+        for (int p = 0; p < matched.length; p++) {
+            if (matched[p]) {
+                score += patterns.values[p];
+            }
+        }
+
+        return score;
+    }
+
+    private static boolean seenEarlier(int[] hand, int index, int card) {
+        for (int i = 0; i < index; i++) {
+            if (hand[i] == card)
+                return true;
+        }
+        return false;
+    }
+}
@@ -1,27 +1,56 @@
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Set;
-import javax.swing.JTextPane;
-import javax.swing.text.BadLocationException;
-import javax.swing.text.Style;
-import javax.swing.text.StyleConstants;
-import javax.swing.text.StyledDocument;
-
-public class SimulationResult {
-    int trials;
+
+public class SimulationResult implements Cloneable {
+    // Percentiles every report lists, besides the median
+    static final double[] PERCENTILES = { 0.05, 0.10, 0.25, 0.75, 0.90 };
+
+    long trials;
     double avg, median, variance, stdDev;
     double bestScore, worstScore;
     List<String> bestHand, worstHand;
     Set<String> bestStarters, bestExtenders, bestHandtraps, bestSoftGarnets;
     double avgStarters, avgExtenders, avgHandtraps, avgSoftGarnets;
-    Map<HandPattern, Integer> patternMatches;
+    Map<HandPattern, Long> patternMatches;
+    Long seed; // seed the run was drawn from, if known
+    long requestedTrials; // trials asked for; more than trials while running or after a cancel
+    double confidence = 0.95; // level of the reported intervals
+    String stopReason; // why a run with a stopping rule ended, if it did
+    HandSampler.Sampling sampling; // how the hands were drawn, if sampled
+    List<StatCollector> collectors = new ArrayList<>(); // every statistic of a sampled run, merged
+    CardSensitivity sensitivity; // one-copy deltas, when this is the baseline of a sensitivity run
+    boolean rescored; // score figures recomputed for new weights or pattern values (see HandHistogram)
+    String handStore; // where the hands of this run were saved to or replayed from (see HandStore)
+    NavigableMap<Double, Double> distribution; // score -> probability, or fraction of the trials if sampled
+    double brickBelow = Double.NaN; // hands scoring below this are bricks, if set (see brickRate)
+
+    // Both-turns run: this result is going second, and these are going first from the same draws (see BothTurns)
+    SimulationResult firstTurn;
+    double coinFlipAvg, coinFlipStdDev; // per trial mean of the two turns' scores
+    double turnGapAvg, turnGapStdDev;   // per trial going second minus going first
+
+    // Multi-turn run: figures at each turn boundary; the fields above are turn 1 (see MultiTurn)
+    MultiTurn.Turns turns;
+
+    // Exact evaluation: probabilities over every distinct hand instead of sampled counts
+    boolean exact;
+    long distinctHands;
+    Map<HandPattern, Double> patternProbabilities;
 
-    public SimulationResult(int trials, double avg, double median, double variance, double stdDev,
+    // Empty result for the collectors of a sampled run to fill in (see StatCollector.report)
+    SimulationResult() {
+        this.patternMatches = Map.of();
+    }
+
+    public SimulationResult(long trials, double avg, double median, double variance, double stdDev,
                             double bestScore, List<String> bestHand,
                             Set<String> starters, Set<String> extenders, Set<String> handtraps, Set<String> garnets,
                             double worstScore, List<String> worstHand,
                             double avgStarters, double avgExtenders, double avgHandtraps, double avgGarnets,
-                            Map<HandPattern, Integer> patternMatches) {
+                            Map<HandPattern, Long> patternMatches) {
         this.trials = trials; this.avg = avg; this.median = median;
         this.variance = variance; this.stdDev = stdDev;
         this.bestScore = bestScore; this.bestHand = bestHand;
@@ -33,53 +62,155 @@ public class SimulationResult {
         this.patternMatches = patternMatches;
     }
 
-    public JTextPane toTextPane() {
-        JTextPane pane = new JTextPane();
-        pane.setEditable(false);
-        StyledDocument doc = pane.getStyledDocument();
-        Style style = pane.addStyle("default", null);
+    public SimulationResult(long distinctHands, double avg, double median, double variance, double stdDev,
+                            double bestScore, List<String> bestHand,
+                            Set<String> starters, Set<String> extenders, Set<String> handtraps, Set<String> garnets,
+                            double worstScore, List<String> worstHand,
+                            double avgStarters, double avgExtenders, double avgHandtraps, double avgGarnets,
+                            Map<HandPattern, Double> patternProbabilities, NavigableMap<Double, Double> distribution) {
+        this(0, avg, median, variance, stdDev, bestScore, bestHand, starters, extenders, handtraps, garnets,
+            worstScore, worstHand, avgStarters, avgExtenders, avgHandtraps, avgGarnets, Map.of());
+        this.exact = true;
+        this.distinctHands = distinctHands;
+        this.patternProbabilities = patternProbabilities;
+        this.distribution = distribution;
+    }
 
+    // Shallow copy, for a result that differs from this one in a few fields
+    SimulationResult copy() {
         try {
-            StyleConstants.setBold(style, true);
-            StyleConstants.setFontSize(style, 14);
-            doc.insertString(doc.getLength(), "Simulation Results\n\n", style);
-
-            StyleConstants.setBold(style, false);
-            doc.insertString(doc.getLength(), String.format("Trials: %,d\n", trials), style);
-            doc.insertString(doc.getLength(), String.format("Average Hand Score: %.3f\nMedian: %.3f\nVariance: %.3f\nStandard Deviation: %.3f\n\n",
-                avg, median, variance, stdDev), style);
-
-            StyleConstants.setBold(style, true);
-            doc.insertString(doc.getLength(), "Best Hand\n", style);
-            StyleConstants.setBold(style, false);
-            doc.insertString(doc.getLength(), String.format("Score: %.3f\nCards: %s\nStarters (%d): %s\nExtenders (%d): %s\nHandtraps (%d): %s\nSoft Garnets (%d): %s\n\n",
-                bestScore, bestHand, bestStarters.size(), bestStarters, bestExtenders.size(), bestExtenders,
-                bestHandtraps.size(), bestHandtraps, bestSoftGarnets.size(), bestSoftGarnets), style);
-
-            StyleConstants.setBold(style, true);
-            doc.insertString(doc.getLength(), "Worst Hand\n", style);
-            StyleConstants.setBold(style, false);
-            doc.insertString(doc.getLength(), String.format("Score: %.3f\nCards: %s\n\n", worstScore, worstHand), style);
-
-            StyleConstants.setBold(style, true);
-            doc.insertString(doc.getLength(), "Average Unique Roles per Hand\n", style);
-            StyleConstants.setBold(style, false);
-            doc.insertString(doc.getLength(), String.format("Starters: %.2f\nExtenders: %.2f\nHandtraps: %.2f\nSoft Garnets: %.2f\n\n",
-                avgStarters, avgExtenders, avgHandtraps, avgSoftGarnets), style);
-
-            StyleConstants.setBold(style, true);
-            doc.insertString(doc.getLength(), "Pattern Matches\n", style);
-            StyleConstants.setBold(style, false);
-            for (Map.Entry<HandPattern, Integer> entry : patternMatches.entrySet()) {
-                double freq = (double) entry.getValue() / trials * 100;
-                doc.insertString(doc.getLength(), String.format("Pattern %s matched %,d times (%.2f%%)\n",
-                    entry.getKey(), entry.getValue(), freq), style);
+            return (SimulationResult) clone();
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    // Typed access to one of this run's collectors, or null if it had none of that kind
+    public <T extends StatCollector> T collector(Class<T> type) {
+        for (StatCollector collector : collectors) {
+            if (type.isInstance(collector))
+                return type.cast(collector);
+        }
+        return null;
+    }
+
+    // Score at quantile q in [0, 1], by the nearest-rank rule; NaN without a distribution
+    public double percentile(double q) {
+        return ScoreStats.quantile(distribution, q);
+    }
+
+    // Probability of a hand scoring below the threshold
+    public double brickRate(double threshold) {
+        if (distribution == null)
+            return Double.NaN;
+        double rate = 0.0;
+        for (double p : distribution.headMap(threshold - 1e-9, false).values())
+            rate += p;
+        return rate;
+    }
+
+    // brickRate(brickBelow) with its Wilson interval, {rate, low, high}; the interval is the
+    // rate itself for an exact run
+    double[] brickInterval() {
+        double rate = brickRate(brickBelow);
+        if (exact)
+            return new double[] { rate, rate, rate };
+        double[] interval = Intervals.wilson(Math.round(rate * trials), trials, Intervals.z(confidence));
+        return new double[] { rate, interval[0], interval[1] };
+    }
+
+    public void write(ReportWriter out) {
+        out.title("Simulation Results");
+        if (exact)
+            out.line(String.format("Exact evaluation over %,d distinct hands", distinctHands));
+        else if (requestedTrials > trials && stopReason == null)
+            out.line(String.format("Trials: %,d of %,d", trials, requestedTrials));
+        else
+            out.line(String.format("Trials: %,d", trials));
+        if (stopReason != null)
+            out.line(stopReason);
+        if (rescored)
+            out.line("Re-scored for the current weights and pattern values, no new trials");
+        if (handStore != null)
+            out.line(handStore);
+        if (seed != null)
+            out.line(String.format("Seed: %d", seed));
+        if (sampling != null && sampling != HandSampler.Sampling.PLAIN)
+            out.line(String.format("Sampling: %s (intervals are conservative)", sampling));
+        if (turns != null) {
+            turns.write(out, confidence);
+            return;
+        }
+        out.line(String.format("Average Hand Score: %.3f", avg));
+        if (!exact) {
+            double half = Intervals.meanHalfWidth(stdDev, trials, Intervals.z(confidence));
+            out.line(String.format("  %.0f%% interval: %.4f +/- %.4f", confidence * 100, avg, half));
+        }
+        out.line(String.format("Median: %.3f", median));
+        out.line(String.format("Variance: %.3f", variance));
+        out.line(String.format("Standard Deviation: %.3f", stdDev));
+        if (distribution != null) {
+            StringBuilder line = new StringBuilder("Percentiles:");
+            for (double q : PERCENTILES)
+                line.append(String.format("  P%.0f %.3f", q * 100, percentile(q)));
+            out.line(line.toString());
+        }
+        if (distribution != null && !Double.isNaN(brickBelow)) {
+            double[] brick = brickInterval();
+            if (exact)
+                out.line(String.format("Brick rate (score below %.3f): %.4f%%", brickBelow, brick[0] * 100));
+            else
+                out.line(String.format("Brick rate (score below %.3f): %.2f%% (%.0f%% interval %.2f%% - %.2f%%)",
+                    brickBelow, brick[0] * 100, confidence * 100, brick[1] * 100, brick[2] * 100));
+        }
+        out.line("");
+
+        out.heading("Best Hand");
+        out.line(String.format("Score: %.3f", bestScore));
+        out.line(String.format("Cards: %s", bestHand));
+        out.line(String.format("Starters (%d): %s", bestStarters.size(), bestStarters));
+        out.line(String.format("Extenders (%d): %s", bestExtenders.size(), bestExtenders));
+        out.line(String.format("Handtraps (%d): %s", bestHandtraps.size(), bestHandtraps));
+        out.line(String.format("Soft Garnets (%d): %s", bestSoftGarnets.size(), bestSoftGarnets));
+        out.line("");
+
+        out.heading("Worst Hand");
+        out.line(String.format("Score: %.3f", worstScore));
+        out.line(String.format("Cards: %s", worstHand));
+        out.line("");
+
+        out.heading("Average Unique Roles per Hand");
+        out.line(String.format("Starters: %.2f", avgStarters));
+        out.line(String.format("Extenders: %.2f", avgExtenders));
+        out.line(String.format("Handtraps: %.2f", avgHandtraps));
+        out.line(String.format("Soft Garnets: %.2f", avgSoftGarnets));
+        out.line("");
+
+        out.heading("Pattern Matches");
+        double z = Intervals.z(confidence);
+        for (Map.Entry<HandPattern, Long> entry : patternMatches.entrySet()) {
+            double freq = (double) entry.getValue() / trials * 100;
+            double[] interval = Intervals.wilson(entry.getValue(), trials, z);
+            out.line(String.format("Pattern %s matched %,d times (%.2f%%, %.0f%% interval %.2f%% - %.2f%%)",
+                entry.getKey(), entry.getValue(), freq, confidence * 100, interval[0] * 100, interval[1] * 100));
+        }
+        if (exact) {
+            for (Map.Entry<HandPattern, Double> entry : patternProbabilities.entrySet()) {
+                out.line(String.format("Pattern %s matches with probability %.4f%%",
+                    entry.getKey(), entry.getValue() * 100));
             }
 
-        } catch (BadLocationException e) {
-            e.printStackTrace();
+            out.line("");
+            out.heading("Score Distribution");
+            for (Map.Entry<Double, Double> entry : distribution.entrySet())
+                out.line(String.format("%8.3f: %.4f%%", entry.getKey(), entry.getValue() * 100));
         }
 
-        return pane;
+        if (firstTurn != null)
+            BothTurns.write(this, out);
+        for (StatCollector collector : collectors)
+            collector.write(out);
+        if (sensitivity != null)
+            sensitivity.write(out);
     }
 }
\ No newline at end of file
@@ -0,0 +1,126 @@
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JProgressBar;
+import javax.swing.SwingWorker;
+
+// Runs a simulation off the event dispatch thread.
+//
+// While it runs, a snapshot of the partial result is handed to `display` every
+// REFRESH_MS, along with the progress bar and a trials/sec readout, so long runs can be
+// watched as they converge and stopped once they are good enough. stop() keeps the
+// trials done so far as the final result.
+public class SimulationWorker extends SwingWorker<SimulationResult, SimulationResult> {
+    static final int REFRESH_MS = 250;
+
+    private final Supplier<SimulationEngine.Simulation> starter;
+    private final Callable<SimulationResult> task;
+    private final Consumer<SimulationResult> display;
+    private final JProgressBar progressBar;
+    private final JLabel statusLabel;
+    private final JButton runButton;
+    private final JButton stopButton;
+    private volatile SimulationEngine.Simulation simulation;
+
+    private SimulationWorker(Supplier<SimulationEngine.Simulation> starter, Callable<SimulationResult> task,
+                             Consumer<SimulationResult> display, JProgressBar progressBar, JLabel statusLabel,
+                             JButton runButton, JButton stopButton) {
+        this.starter = starter;
+        this.task = task;
+        this.display = display;
+        this.progressBar = progressBar;
+        this.statusLabel = statusLabel;
+        this.runButton = runButton;
+        this.stopButton = stopButton;
+    }
+
+    // A sampled run with live progress
+    public static SimulationWorker forSimulation(Supplier<SimulationEngine.Simulation> starter,
+                                                 Consumer<SimulationResult> display, JProgressBar progressBar,
+                                                 JLabel statusLabel, JButton runButton, JButton stopButton) {
+        return new SimulationWorker(starter, null, display, progressBar, statusLabel, runButton, stopButton);
+    }
+
+    // A job with no progress to report, such as an exact evaluation
+    public static SimulationWorker forTask(Callable<SimulationResult> task, Consumer<SimulationResult> display,
+                                           JProgressBar progressBar, JLabel statusLabel, JButton runButton,
+                                           JButton stopButton) {
+        return new SimulationWorker(null, task, display, progressBar, statusLabel, runButton, stopButton);
+    }
+
+    // Call on the EDT instead of execute()
+    public void begin() {
+        runButton.setEnabled(false);
+        stopButton.setEnabled(starter != null);
+        progressBar.setValue(0);
+        progressBar.setIndeterminate(starter == null);
+        statusLabel.setText("Running...");
+        execute();
+    }
+
+    public void stop() {
+        SimulationEngine.Simulation running = simulation;
+        if (running != null)
+            running.cancel();
+    }
+
+    @Override
+    protected SimulationResult doInBackground() throws Exception {
+        if (task != null)
+            return task.call();
+
+        simulation = starter.get();
+        while (!simulation.isDone()) {
+            Thread.sleep(REFRESH_MS);
+            SimulationResult partial = simulation.snapshot();
+            if (partial != null)
+                publish(partial);
+        }
+        return simulation.await();
+    }
+
+    @Override
+    protected void process(List<SimulationResult> partials) {
+        display.accept(partials.get(partials.size() - 1));
+        showProgress();
+    }
+
+    @Override
+    protected void done() {
+        runButton.setEnabled(true);
+        stopButton.setEnabled(false);
+        progressBar.setIndeterminate(false);
+        try {
+            display.accept(get());
+            if (simulation != null) {
+                showProgress();
+            } else {
+                progressBar.setValue(100);
+                statusLabel.setText("Done.");
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            statusLabel.setText("Failed.");
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            JOptionPane.showMessageDialog(null, "Simulation failed: " + cause.getMessage(), "Error",
+                    JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private void showProgress() {
+        long done = simulation.completedTrials();
+        long total = simulation.totalTrials();
+        double seconds = simulation.elapsedSeconds();
+        double rate = seconds > 0 ? done / seconds : 0.0;
+        progressBar.setValue((int) (100 * simulation.progress()));
+        if (simulation.isTimed())
+            statusLabel.setText(String.format("%,d trials in %.1f s, %,.0f trials/s", done, seconds, rate));
+        else
+            statusLabel.setText(String.format("%,d / %,d trials, %,.0f trials/s%s", done, total, rate,
+                    isDone() && done < total ? " (stopped)" : ""));
+    }
+}
@@ -0,0 +1,100 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Role and weight overrides and hand patterns, read from the config text format the GUIs
+// load and save. Kept free of Swing so the batch runner can read the same files.
+public class SimulatorConfig {
+    final Map<String, CardRoles.CardInfo> cardInfos = new HashMap<>();
+    final Map<String, Double> weightsFirst = new HashMap<>();
+    final Map<String, Double> weightsSecond = new HashMap<>();
+    final List<HandPattern> handPatterns = new ArrayList<>();
+    final Map<String, List<String>> searches = new LinkedHashMap<>(); // card -> cards it adds from the deck
+    final List<ComboRule> combos = new ArrayList<>();
+
+
+    // Lines are "card=role,opt", "card=first,second", "cards|role:count,...|weight" or
+    // "card->target,target,..." for a card that adds the first target left in the deck to the
+    // hand (see MultiTurn), or "combo:required|forbidden|bonus" (see ComboRule); blank lines,
+    // # comments and malformed lines are skipped
+    public static SimulatorConfig parse(String text) {
+        SimulatorConfig config = new SimulatorConfig();
+        Arrays.stream(text.split("\\R"))
+                .map(String::trim)
+                .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                .forEach(line -> {
+                    try {
+                        if (line.startsWith("combo:")) {
+                            config.combos.add(ComboRule.parse(line.substring("combo:".length())));
+                        } else if (line.contains("->")) {
+                            // Search line: card->targets
+                            int arrow = line.indexOf("->");
+                            List<String> targets = new ArrayList<>();
+                            for (String card : line.substring(arrow + 2).split(",")) {
+                                if (!card.trim().isEmpty())
+                                    targets.add(card.trim());
+                            }
+                            if (!targets.isEmpty())
+                                config.searches.put(line.substring(0, arrow).trim(), targets);
+                        } else if (line.contains("=")) {
+                            String[] parts = line.split("=");
+                            if (parts.length < 2)
+                                return;
+                            String key = parts[0].trim();
+                            String val = parts[1].trim();
+                            if (val.contains(",") && (val.contains("handtrap") || val.contains("starter")
+                                    || val.contains("extender") || val.contains("soft garnet"))) {
+                                // Card Role line
+                                String[] roleParts = val.split(",");
+                                config.cardInfos.put(key, new CardRoles.CardInfo(roleParts[0].trim(),
+                                        Boolean.parseBoolean(roleParts[1].trim())));
+                            } else if (val.contains(",")) {
+                                // Weights line
+                                String[] weights = val.split(",");
+                                if (weights.length < 2)
+                                    return;
+                                config.weightsFirst.put(key, Double.parseDouble(weights[0].trim()));
+                                config.weightsSecond.put(key, Double.parseDouble(weights[1].trim()));
+                            }
+                        } else if (line.contains("|")) {
+                            // Hand pattern line: cards|roleCounts|weight
+                            String[] parts = line.split("\\|");
+                            List<String> cardsList = new ArrayList<>();
+                            for (String card : parts[0].split(",")) {
+                                if (!card.trim().isEmpty())
+                                    cardsList.add(card.trim());
+                            }
+                            Map<String, Integer> roleCounts = new HashMap<>();
+                            for (String rc : parts[1].split(",")) {
+                                String[] rolePair = rc.split(":");
+                                roleCounts.put(rolePair[0].trim(), Integer.parseInt(rolePair[1].trim()));
+                            }
+                            double weight = parts.length > 2 ? Double.parseDouble(parts[2].trim()) : 1.0;
+                            config.handPatterns.add(new HandPattern(cardsList, roleCounts, weight));
+                        }
+                    } catch (Exception e) {
+                        // Ignore malformed lines
+                    }
+                });
+        return config;
+    }
+
+    // The search in the config line format, e.g. "Ext Ryzeal->Ice Ryzeal,Sword Ryzeal"
+    static String searchLine(String card, List<String> targets) {
+        return card + "->" + String.join(",", targets);
+    }
+
+    // The pattern in the config line format, e.g. "Ext Ryzeal|handtrap:3|1.0"
+    static String patternLine(HandPattern pattern) {
+        StringBuilder roles = new StringBuilder();
+        for (Map.Entry<String, Integer> entry : pattern.getRoleCounts().entrySet()) {
+            if (roles.length() > 0)
+                roles.append(',');
+            roles.append(entry.getKey()).append(':').append(entry.getValue());
+        }
+        return String.join(",", pattern.getRequiredCards()) + "|" + roles + "|" + pattern.getHandValue();
+    }
+}
@@ -0,0 +1,29 @@
+// A statistic gathered in the engine's single pass over each trial.
+//
+// Each block of trials fills its own instance (see newInstance), and the engine folds the
+// blocks together in block order with merge, so a collector needs no locking and a seeded
+// run still gives the same numbers on any number of threads. accept is called in the hot
+// loop and should only update fields; anything it needs per trial belongs in Trial.
+public interface StatCollector {
+    // Empty state for another block, sharing any read-only setup with this one
+    StatCollector newInstance();
+
+    void accept(Trial trial);
+
+    // Fold the state of a later block into this one; `later` is the same kind of collector
+    void merge(StatCollector later);
+
+    // Copy the finished statistic into the result's fields, if it has any
+    default void report(SimulationResult result) {
+    }
+
+    // False for a statistic too costly to copy into every partial result of a running
+    // simulation; those show it empty, and only the final result has it (see BlockRun.snapshot)
+    default boolean inSnapshots() {
+        return true;
+    }
+
+    // Extra section for the written report
+    default void write(ReportWriter out) {
+    }
+}
@@ -0,0 +1,200 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// The statistics every sampled run reports. Each fills its part of SimulationResult.
+public class StatCollectors {
+
+    // Mean, variance, median and distribution of the hand score
+    public static class ScoreMoments implements StatCollector {
+        final ScoreStats scores;
+
+        ScoreMoments(ScoreStats scores) {
+            this.scores = scores;
+        }
+
+        @Override
+        public StatCollector newInstance() {
+            return new ScoreMoments(scores.emptyCopy());
+        }
+
+        @Override
+        public void accept(Trial trial) {
+            scores.add(trial.score);
+        }
+
+        @Override
+        public void merge(StatCollector later) {
+            scores.merge(((ScoreMoments) later).scores);
+        }
+
+        @Override
+        public void report(SimulationResult result) {
+            result.trials = scores.count();
+            result.avg = scores.mean();
+            result.median = scores.median();
+            result.variance = scores.variance();
+            result.stdDev = scores.stdDev();
+            result.distribution = scores.distribution();
+        }
+    }
+
+    // Average number of distinct cards per hand for each of CompiledDeck.TRACKED_ROLES
+    public static class RoleAverages implements StatCollector {
+        private final int[] slotOf; // card id -> index into totals, or -1 for an untracked role
+        private final long[] totals;
+        private long trials = 0;
+
+        RoleAverages(CompiledDeck deck) {
+            int[] tracked = deck.trackedRoleIds();
+            slotOf = new int[deck.cardCount()];
+            for (int card = 0; card < slotOf.length; card++) {
+                slotOf[card] = -1;
+                for (int r = 0; r < tracked.length; r++) {
+                    if (tracked[r] == deck.roleOf[card])
+                        slotOf[card] = r;
+                }
+            }
+            totals = new long[tracked.length];
+        }
+
+        private RoleAverages(int[] slotOf, int slots) {
+            this.slotOf = slotOf;
+            this.totals = new long[slots];
+        }
+
+        @Override
+        public StatCollector newInstance() {
+            return new RoleAverages(slotOf, totals.length);
+        }
+
+        @Override
+        public void accept(Trial trial) {
+            trials++;
+            for (int i = 0; i < trial.distinctCount; i++) {
+                int slot = slotOf[trial.distinct[i]];
+                if (slot >= 0)
+                    totals[slot]++;
+            }
+        }
+
+        @Override
+        public void merge(StatCollector later) {
+            RoleAverages other = (RoleAverages) later;
+            trials += other.trials;
+            for (int r = 0; r < totals.length; r++)
+                totals[r] += other.totals[r];
+        }
+
+        @Override
+        public void report(SimulationResult result) {
+            result.avgStarters = (double) totals[0] / trials;
+            result.avgExtenders = (double) totals[1] / trials;
+            result.avgHandtraps = (double) totals[2] / trials;
+            result.avgSoftGarnets = (double) totals[3] / trials;
+        }
+    }
+
+    // Highest and lowest scoring hands; ties keep the earliest
+    public static class BestWorst implements StatCollector {
+        private final CompiledDeck deck;
+        private final int[] tracked;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        int[] bestHand = new int[0];
+        double worstScore = Double.POSITIVE_INFINITY;
+        int[] worstHand = new int[0];
+
+        BestWorst(CompiledDeck deck, int[] tracked) {
+            this.deck = deck;
+            this.tracked = tracked;
+        }
+
+        @Override
+        public StatCollector newInstance() {
+            return new BestWorst(deck, tracked);
+        }
+
+        @Override
+        public void accept(Trial trial) {
+            if (trial.score > bestScore) {
+                bestScore = trial.score;
+                bestHand = Arrays.copyOf(trial.hand, trial.handSize);
+            }
+            if (trial.score < worstScore) {
+                worstScore = trial.score;
+                worstHand = Arrays.copyOf(trial.hand, trial.handSize);
+            }
+        }
+
+        @Override
+        public void merge(StatCollector later) {
+            BestWorst other = (BestWorst) later;
+            if (other.bestScore > bestScore) {
+                bestScore = other.bestScore;
+                bestHand = other.bestHand;
+            }
+            if (other.worstScore < worstScore) {
+                worstScore = other.worstScore;
+                worstHand = other.worstHand;
+            }
+        }
+
+        @Override
+        public void report(SimulationResult result) {
+            result.bestScore = bestScore;
+            result.worstScore = worstScore;
+            result.bestHand = deck.namesOf(bestHand, bestHand.length);
+            result.worstHand = deck.namesOf(worstHand, worstHand.length);
+            result.bestStarters = SimulationEngine.cardsWithRole(deck, bestHand, bestHand.length, tracked[0]);
+            result.bestExtenders = SimulationEngine.cardsWithRole(deck, bestHand, bestHand.length, tracked[1]);
+            result.bestHandtraps = SimulationEngine.cardsWithRole(deck, bestHand, bestHand.length, tracked[2]);
+            result.bestSoftGarnets = SimulationEngine.cardsWithRole(deck, bestHand, bestHand.length, tracked[3]);
+        }
+    }
+
+    // How many hands matched each pattern
+    public static class PatternCounts implements StatCollector {
+        private final List<HandPattern> patterns;
+        final long[] matches;
+
+        PatternCounts(List<HandPattern> patterns) {
+            this.patterns = patterns;
+            this.matches = new long[patterns.size()];
+        }
+
+        @Override
+        public StatCollector newInstance() {
+            return new PatternCounts(patterns);
+        }
+
+        @Override
+        public void accept(Trial trial) {
+            if (matches.length > 64) {
+                boolean[] matched = trial.matched;
+                for (int p = 0; p < matched.length; p++) {
+                    if (matched[p])
+                        matches[p]++;
+                }
+            } else {
+                for (long mask = trial.matchMask; mask != 0; mask &= mask - 1)
+                    matches[Long.numberOfTrailingZeros(mask)]++;
+            }
+        }
+
+        @Override
+        public void merge(StatCollector later) {
+            long[] other = ((PatternCounts) later).matches;
+            for (int p = 0; p < matches.length; p++)
+                matches[p] += other[p];
+        }
+
+        @Override
+        public void report(SimulationResult result) {
+            Map<HandPattern, Long> counts = new LinkedHashMap<>(); // in pattern order
+            for (int p = 0; p < patterns.size(); p++)
+                counts.put(patterns.get(p), matches[p]);
+            result.patternMatches = counts;
+        }
+    }
+}
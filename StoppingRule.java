@@ -0,0 +1,78 @@
+// When a sampled run may stop before its trial count is used up.
+//
+// Precision targets are checked on the merged result every few blocks, at block counts
+// that do not depend on the thread count, so a seeded precision run still stops at the
+// same trial and gives the same numbers on any machine. A time budget stops wherever the
+// clock says and is not reproducible.
+public class StoppingRule {
+    final double scoreHalfWidth;    // average score within +/- this, 0 to ignore
+    final double patternHalfWidth;  // every pattern probability within +/- this, 0 to ignore
+    final double confidence;
+    final double timeLimitSeconds;  // 0 for no time budget
+
+    private StoppingRule(double scoreHalfWidth, double patternHalfWidth, double confidence, double timeLimitSeconds) {
+        this.scoreHalfWidth = scoreHalfWidth;
+        this.patternHalfWidth = patternHalfWidth;
+        this.confidence = confidence;
+        this.timeLimitSeconds = timeLimitSeconds;
+    }
+
+    public static StoppingRule precision(double scoreHalfWidth, double patternHalfWidth, double confidence) {
+        if (scoreHalfWidth <= 0 && patternHalfWidth <= 0)
+            throw new IllegalArgumentException("Set a score or pattern precision target");
+        if (confidence <= 0 || confidence >= 1)
+            throw new IllegalArgumentException("Confidence must be between 0 and 1");
+        return new StoppingRule(scoreHalfWidth, patternHalfWidth, confidence, 0);
+    }
+
+    // Choices for the "Stop When" dropdowns, in the order fromChoice expects
+    static final String[] CHOICES = { "Trials reached", "Average score +/-", "Every pattern +/- (%)", "Time budget (s)" };
+
+    // Rule for a dropdown choice and its target value; null means just run the trials
+    static StoppingRule fromChoice(int choice, double target) {
+        switch (choice) {
+            case 1: return precision(target, 0, 0.95);
+            case 2: return precision(0, target / 100.0, 0.95);
+            case 3: return timeBudget(target);
+            default: return null;
+        }
+    }
+
+    public static StoppingRule timeBudget(double seconds) {
+        if (seconds <= 0)
+            throw new IllegalArgumentException("Time budget must be positive");
+        return new StoppingRule(0, 0, 0.95, seconds);
+    }
+
+    boolean hasPrecisionTarget() {
+        return scoreHalfWidth > 0 || patternHalfWidth > 0;
+    }
+
+    // True once every target is met for n trials with the given mean spread and pattern counts
+    boolean isMet(double stdDev, long n, long[] patternMatches) {
+        double z = Intervals.z(confidence);
+        if (scoreHalfWidth > 0 && Intervals.meanHalfWidth(stdDev, n, z) > scoreHalfWidth)
+            return false;
+        if (patternHalfWidth > 0) {
+            for (long matches : patternMatches) {
+                if (Intervals.wilsonHalfWidth(matches, n, z) > patternHalfWidth)
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    public String describe() {
+        if (timeLimitSeconds > 0)
+            return String.format("time budget of %.1f s", timeLimitSeconds);
+        StringBuilder sb = new StringBuilder();
+        if (scoreHalfWidth > 0)
+            sb.append(String.format("average score +/- %s", scoreHalfWidth));
+        if (patternHalfWidth > 0) {
+            if (sb.length() > 0)
+                sb.append(", ");
+            sb.append(String.format("every pattern +/- %.3f%%", patternHalfWidth * 100));
+        }
+        return sb.append(String.format(" at %.0f%% confidence", confidence * 100)).toString();
+    }
+}
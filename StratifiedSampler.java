@@ -0,0 +1,70 @@
+import java.util.SplittableRandom;
+
+// Draws hands stratified by how many cards of one role (the starters) they contain.
+//
+// The starter count of a random hand is hypergeometric. Within a block of m trials,
+// trial i is given the starter count at quantile (i + u) / m of that distribution, with
+// one uniform u per block, which is systematic sampling with proportional allocation:
+// over the block every count gets its exact share of trials, so the plain average of the
+// block is still an unbiased estimate, with the between-strata noise taken out. The hand
+// itself is then a uniform draw of that many starters and the rest from the other cards.
+//
+// Not safe to share between threads.
+public class StratifiedSampler {
+    private final HandSampler inStratum;
+    private final HandSampler outside;
+    private final int handSize;
+    private final int lowestCount;
+    private final double[] cumulative; // P(count <= lowestCount + k)
+
+    private double offset;
+    private int blockTrials;
+    private int drawn;
+
+    public StratifiedSampler(int[] cards, boolean[] inRole, int handSize) {
+        int k = 0;
+        for (int card : cards) {
+            if (inRole[card])
+                k++;
+        }
+        int[] members = new int[k], others = new int[cards.length - k];
+        int a = 0, b = 0;
+        for (int card : cards) {
+            if (inRole[card])
+                members[a++] = card;
+            else
+                others[b++] = card;
+        }
+        if (handSize > cards.length)
+            throw new IllegalArgumentException("Deck has " + cards.length + " cards, cannot draw " + handSize);
+        this.inStratum = new HandSampler(members, Math.min(handSize, members.length));
+        this.outside = new HandSampler(others, Math.min(handSize, others.length));
+        this.handSize = handSize;
+
+        lowestCount = Math.max(0, handSize - others.length);
+        int highestCount = Math.min(k, handSize);
+        cumulative = new double[highestCount - lowestCount + 1];
+        double total = ExactEvaluator.binomial(cards.length, handSize), sum = 0;
+        for (int s = lowestCount; s <= highestCount; s++) {
+            sum += ExactEvaluator.binomial(k, s) * ExactEvaluator.binomial(others.length, handSize - s) / total;
+            cumulative[s - lowestCount] = sum;
+        }
+    }
+
+    // Call once before the trials of each block
+    public void startBlock(SplittableRandom random, int trials) {
+        offset = random.nextDouble();
+        blockTrials = trials;
+        drawn = 0;
+    }
+
+    public void draw(SplittableRandom random, int[] hand) {
+        double quantile = (drawn++ + offset) / blockTrials;
+        int s = 0;
+        while (s < cumulative.length - 1 && cumulative[s] <= quantile)
+            s++;
+        int count = lowestCount + s;
+        inStratum.draw(random, count, hand, 0);
+        outside.draw(random, handSize - count, hand, count);
+    }
+}
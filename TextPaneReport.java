@@ -0,0 +1,49 @@
+import javax.swing.JTextPane;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Style;
+import javax.swing.text.StyleConstants;
+import javax.swing.text.StyledDocument;
+
+// A result report in a read-only JTextPane, with bold headings.
+public class TextPaneReport implements ReportWriter {
+    private final JTextPane pane = new JTextPane();
+    private final StyledDocument doc = pane.getStyledDocument();
+    private final Style style = pane.addStyle("default", null);
+
+    public static JTextPane of(SimulationResult result) {
+        TextPaneReport report = new TextPaneReport();
+        result.write(report);
+        return report.pane;
+    }
+
+    private TextPaneReport() {
+        pane.setEditable(false);
+    }
+
+    @Override
+    public void title(String text) {
+        StyleConstants.setBold(style, true);
+        StyleConstants.setFontSize(style, 14);
+        insert(text + "\n\n");
+    }
+
+    @Override
+    public void heading(String text) {
+        StyleConstants.setBold(style, true);
+        insert(text + "\n");
+    }
+
+    @Override
+    public void line(String text) {
+        StyleConstants.setBold(style, false);
+        insert(text + "\n");
+    }
+
+    private void insert(String text) {
+        try {
+            doc.insertString(doc.getLength(), text, style);
+        } catch (BadLocationException e) {
+            e.printStackTrace();
+        }
+    }
+}
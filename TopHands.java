@@ -0,0 +1,243 @@
+import java.util.ArrayList;
+import java.util.List;
+
+// The K highest and K lowest scoring distinct hands of a sampled run, each with how many
+// times it was drawn and its exact probability.
+//
+// A single best or worst hand is usually a one-in-a-million outlier; the lists show which
+// hands sit at either end of the distribution and how often they turn up. Hands are compared
+// as multisets (sorted and packed, see HandHistogram.pack) and ranked by score, ties broken by
+// the packed hand, which puts every distinct hand in one fixed order. Each list is a binary
+// heap of K entries whose root is the entry to evict next, so a trial that cannot make either
+// list costs two comparisons and allocates nothing; only a trial at or past a root packs its
+// hand and looks it up among the K entries.
+//
+// Because the order does not depend on when a hand was drawn, a hand in the final top K is
+// in the top K of every block that drew it and is never evicted, so its count is exact and
+// the merged lists are the same on any number of threads.
+public class TopHands implements StatCollector {
+    // One ranked hand, for reports
+    public static class Entry {
+        public final List<String> cards;
+        public final double score;
+        public final long count;
+        public final double probability; // of being dealt exactly these cards
+
+        Entry(List<String> cards, double score, long count, double probability) {
+            this.cards = cards;
+            this.score = score;
+            this.count = count;
+            this.probability = probability;
+        }
+    }
+
+    // Up to k hands in a heap whose root ranks last
+    private static class Ranking {
+        final boolean highest; // keep the highest scores, else the lowest
+        final double[] scores;
+        final long[] keys;
+        final long[] counts;
+        int size = 0;
+
+        Ranking(boolean highest, int k) {
+            this.highest = highest;
+            scores = new double[k];
+            keys = new long[k];
+            counts = new long[k];
+        }
+
+        // True if a hand with this score could be in the list
+        boolean admits(double score) {
+            return size < scores.length || (highest ? score >= scores[0] : score <= scores[0]);
+        }
+
+        // True if (score, key) ranks ahead of entry i
+        private boolean ahead(double score, long key, int i) {
+            if (score != scores[i])
+                return highest ? score > scores[i] : score < scores[i];
+            return key < keys[i];
+        }
+
+        void add(double score, long key, long count) {
+            for (int i = 0; i < size; i++) {
+                if (keys[i] == key) {
+                    counts[i] += count;
+                    return;
+                }
+            }
+            if (size < scores.length) {
+                set(size, score, key, count);
+                siftUp(size++);
+            } else if (ahead(score, key, 0)) {
+                set(0, score, key, count);
+                siftDown(0);
+            }
+        }
+
+        private void set(int i, double score, long key, long count) {
+            scores[i] = score;
+            keys[i] = key;
+            counts[i] = count;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (!ahead(scores[parent], keys[parent], i))
+                    return;
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int last = i;
+                for (int child = 2 * i + 1; child <= 2 * i + 2 && child < size; child++) {
+                    if (ahead(scores[last], keys[last], child))
+                        last = child;
+                }
+                if (last == i)
+                    return;
+                swap(i, last);
+                i = last;
+            }
+        }
+
+        private void swap(int a, int b) {
+            double score = scores[a];
+            long key = keys[a], count = counts[a];
+            set(a, scores[b], keys[b], counts[b]);
+            set(b, score, key, count);
+        }
+    }
+
+    private final CompiledDeck deck;
+    private final int k;
+    private final boolean disabled; // card ids do not fit HandHistogram.pack
+    private final Ranking best, worst;
+    private final int[] sorted = new int[16];
+    private int handSize = 0;
+    private long trials = 0;
+
+    public TopHands(CompiledDeck deck, int k) {
+        if (k <= 0)
+            throw new IllegalArgumentException("The hand lists need at least one entry each");
+        this.deck = deck;
+        this.k = k;
+        this.disabled = deck.cardCount() > 1 << HandHistogram.BITS_PER_CARD;
+        this.best = new Ranking(true, k);
+        this.worst = new Ranking(false, k);
+    }
+
+    @Override
+    public StatCollector newInstance() {
+        return new TopHands(deck, k);
+    }
+
+    @Override
+    public void accept(Trial trial) {
+        add(trial.hand, trial.handSize, trial.score, 1);
+    }
+
+    // `copies` draws of one hand with this score
+    void add(int[] hand, int handSize, double score, long copies) {
+        this.handSize = handSize;
+        trials += copies;
+        if (disabled)
+            return;
+        boolean high = best.admits(score), low = worst.admits(score);
+        if (!high && !low)
+            return;
+        long key = HandHistogram.pack(hand, handSize, sorted);
+        if (high)
+            best.add(score, key, copies);
+        if (low)
+            worst.add(score, key, copies);
+    }
+
+    @Override
+    public void merge(StatCollector later) {
+        TopHands other = (TopHands) later;
+        if (other.handSize > 0)
+            handSize = other.handSize;
+        trials += other.trials;
+        for (int i = 0; i < other.best.size; i++)
+            best.add(other.best.scores[i], other.best.keys[i], other.best.counts[i]);
+        for (int i = 0; i < other.worst.size; i++)
+            worst.add(other.worst.scores[i], other.worst.keys[i], other.worst.counts[i]);
+    }
+
+    // Empty lists of the same size, to refill (see HandHistogram.rescore)
+    TopHands emptyCopy() {
+        return new TopHands(deck, k);
+    }
+
+    // Highest scores first
+    public List<Entry> best() {
+        return entries(best);
+    }
+
+    // Lowest scores first
+    public List<Entry> worst() {
+        return entries(worst);
+    }
+
+    public long trials() {
+        return trials;
+    }
+
+    private List<Entry> entries(Ranking ranking) {
+        // Repeatedly take the entry ranking ahead of all others left
+        boolean[] taken = new boolean[ranking.size];
+        List<Entry> entries = new ArrayList<>();
+        int[] copies = new int[deck.cardCount()];
+        for (int card : deck.cards)
+            copies[card]++;
+        int[] hand = new int[handSize];
+        for (int n = 0; n < ranking.size; n++) {
+            int first = -1;
+            for (int i = 0; i < ranking.size; i++) {
+                if (!taken[i] && (first < 0 || ranking.ahead(ranking.scores[i], ranking.keys[i], first)))
+                    first = i;
+            }
+            taken[first] = true;
+            HandHistogram.unpack(ranking.keys[first], hand, handSize);
+            entries.add(new Entry(deck.namesOf(hand, handSize), ranking.scores[first], ranking.counts[first],
+                    probability(hand, copies)));
+        }
+        return entries;
+    }
+
+    // Multivariate hypergeometric probability of a sorted hand
+    private double probability(int[] hand, int[] copies) {
+        double ways = 1;
+        for (int i = 0; i < handSize; ) {
+            int j = i;
+            while (j < handSize && hand[j] == hand[i])
+                j++;
+            ways *= ExactEvaluator.binomial(copies[hand[i]], j - i);
+            i = j;
+        }
+        return ways / ExactEvaluator.binomial(deck.size(), handSize);
+    }
+
+    @Override
+    public void write(ReportWriter out) {
+        if (disabled)
+            return;
+        out.line("");
+        out.heading(String.format("Top %d Distinct Hands", k));
+        for (Entry entry : best())
+            out.line(line(entry));
+        out.line("");
+        out.heading(String.format("Bottom %d Distinct Hands", k));
+        for (Entry entry : worst())
+            out.line(line(entry));
+    }
+
+    private String line(Entry entry) {
+        return String.format("%.3f  drawn %,d times (%.4f%%, exact %.4f%%)  %s", entry.score, entry.count,
+                100.0 * entry.count / Math.max(1, trials), 100.0 * entry.probability, entry.cards);
+    }
+}
@@ -0,0 +1,47 @@
+// One drawn hand and what the engine worked out about it.
+//
+// The engine fills this in once per trial and hands it to every StatCollector, so a
+// statistic reads the score, the pattern matches and the distinct cards from here instead
+// of going over the hand again. The arrays are reused for the next trial: a collector that
+// wants to keep a hand must copy it.
+public class Trial {
+    final CompiledDeck deck;
+    final boolean goingSecond;
+    final int handSize;
+    final int[] hand;           // card ids, in draw order
+    final boolean[] matched;    // scratch for the pattern matcher; read matches through matched(p)
+    long matchMask;             // bit p set if pattern p matched, when there are at most 64 patterns
+    final int[] distinct;       // the hand's distinct card ids, in draw order
+    int distinctCount;
+    double score;
+
+    private final int[] seen;   // card id -> last trial it was seen in, for distinct
+    private int stamp = 0;
+
+    Trial(CompiledDeck deck, boolean goingSecond, int handSize, int patternCount) {
+        this.deck = deck;
+        this.goingSecond = goingSecond;
+        this.handSize = handSize;
+        this.hand = new int[handSize];
+        this.matched = new boolean[patternCount];
+        this.distinct = new int[handSize];
+        this.seen = new int[deck.cardCount()];
+    }
+
+    boolean matched(int pattern) {
+        return matched.length > 64 ? matched[pattern] : (matchMask >>> pattern & 1) != 0;
+    }
+
+    // Recompute distinct after a new hand has been drawn into hand
+    void findDistinct() {
+        stamp++;
+        distinctCount = 0;
+        for (int i = 0; i < handSize; i++) {
+            int card = hand[i];
+            if (seen[card] != stamp) {
+                seen[card] = stamp;
+                distinct[distinctCount++] = card;
+            }
+        }
+    }
+}
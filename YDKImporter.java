@@ -3,52 +3,43 @@ import java.util.*;
 
 public class YDKImporter {
 
-    private Map<Integer, String> cardMap;
+    private final CardDatabase cards;
 
+    // Cheap after the first call for a CSV: the parsed database is cached (see CardDatabase)
     public YDKImporter(String csvPath) throws IOException {
-        this.cardMap = loadCardMap(csvPath);
+        this.cards = CardDatabase.open(csvPath);
     }
 
-    private Map<Integer, String> loadCardMap(String csvPath) throws IOException {
-        Map<Integer, String> map = new HashMap<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(csvPath))) {
-            String line;
-            boolean isFirstLine = true;
-            while ((line = reader.readLine()) != null) {
-                if (isFirstLine) {
-                    isFirstLine = false; // Skip header
-                    continue;
-                }
-                String[] parts = line.split(",", 2);
-                if (parts.length == 2) {
-                    try {
-                        int id = Integer.parseInt(parts[0].trim());
-                        String name = parts[1].trim();
-                        map.put(id, name);
-                    } catch (NumberFormatException e) {
-                        // Skip lines with invalid ID format
-                    }
-                }
-            }
-        }
-        return map;
+    public List<String> getCardNamesFromYDK(String ydkPath) throws IOException {
+        return readSection(ydkPath, "#main");
     }
 
-    public List<String> getCardNamesFromYDK(String ydkPath) throws IOException {
+    // The extra deck, e.g. for the summon targets of a ComboSolver
+    public List<String> getExtraDeckFromYDK(String ydkPath) throws IOException {
+        return readSection(ydkPath, "#extra");
+    }
+
+    // Card names listed under one section header; the main deck also takes cards listed
+    // before any header
+    private List<String> readSection(String ydkPath, String section) throws IOException {
         List<String> cardNames = new ArrayList<>();
         try (BufferedReader reader = new BufferedReader(new FileReader(ydkPath))) {
             String line;
+            boolean inSection = section.equals("#main");
             while ((line = reader.readLine()) != null) {
                 line = line.trim();
-                if (line.equalsIgnoreCase("#extra")) {
-                    break; // Stop reading at the #extra section
+                if (line.equalsIgnoreCase("#main") || line.equalsIgnoreCase("#extra") || line.startsWith("!")) {
+                    inSection = line.equalsIgnoreCase(section);
+                    continue;
                 }
-                if (line.isEmpty() || line.startsWith("#") || line.startsWith("!")) {
-                    continue; // Skip comments and section headers
+                if (line.isEmpty() || line.startsWith("#") || !inSection) {
+                    continue; // Skip comments and other sections
                 }
                 try {
                     int id = Integer.parseInt(line);
-                    String name = cardMap.getOrDefault(id, "Unknown Card ID: " + id);
+                    String name = cards.name(id);
+                    if (name == null)
+                        name = "Unknown Card ID: " + id;
                     cardNames.add(name);
                 } catch (NumberFormatException e) {
                     // Skip lines that are not numeric
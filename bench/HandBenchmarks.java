@@ -0,0 +1,374 @@
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.regex.Pattern;
+
+// Microbenchmarks for the simulation hot paths, with no dependencies beyond the JDK.
+//
+// Each benchmark is warmed up, then timed over several fixed-length iterations, JMH style.
+// Scores are ns per operation with a 99.9% interval over the iterations. Allocation is
+// bytes per operation on the benchmark thread (the same counter JMH's GC profiler reads),
+// and the GC columns count collections and pause time across the measured iterations.
+// The full-run benchmarks draw on pool threads, whose allocation only shows up in the GC
+// columns.
+//
+// Reference decks: the 40-card Ryzeal list, and a 60-card list padded out from both sample
+// decks. "few" is three hand-written patterns, "many" 40 random ones from a fixed seed.
+//
+// Compile and run from the project root, next to src:
+//   javac -d bin src/*.java bench/*.java
+//   java -cp bin HandBenchmarks [--filter regex] [--warmup n] [--iterations n] [--time seconds]
+public class HandBenchmarks {
+    static final int BATCH = 10_000; // hands per call for the per-hand benchmarks
+    static final double[] T999 = { 636.6, 31.60, 12.92, 8.610, 6.869, 5.959, 5.408, 5.041, 4.781, 4.587 };
+
+    static volatile long sink; // keeps results alive so the JIT cannot drop the work
+
+    // One timed operation; returns something derived from the work for the sink
+    interface Op {
+        long run();
+    }
+
+    static class Benchmark {
+        final String name;
+        final long opsPerCall;
+        final Op op;
+
+        Benchmark(String name, long opsPerCall, Op op) {
+            this.name = name;
+            this.opsPerCall = opsPerCall;
+            this.op = op;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2)
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        Pattern filter = Pattern.compile(options.getOrDefault("filter", ".*"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "3"));
+        int iterations = Integer.parseInt(options.getOrDefault("iterations", "5"));
+        double seconds = Double.parseDouble(options.getOrDefault("time", "1"));
+        String cards = options.getOrDefault("cards", "src/cards.csv");
+        String deck40 = options.getOrDefault("deck", "src/mitsu ryzeal handtrap.ydk");
+        String extra = options.getOrDefault("extra-deck", "src/mitsuragi ryzeal prayers.ydk");
+
+        List<Benchmark> benchmarks = benchmarks(cards, deck40, extra);
+        System.out.printf("%-36s %5s %12s %10s  %-6s %12s %8s %8s%n",
+                "Benchmark", "Cnt", "Score", "Error", "Units", "alloc B/op", "gc.count", "gc.ms");
+        for (Benchmark benchmark : benchmarks) {
+            if (filter.matcher(benchmark.name).find())
+                measure(benchmark, warmup, iterations, seconds);
+        }
+    }
+
+    static List<Benchmark> benchmarks(String cardsPath, String deckPath, String extraPath) throws IOException {
+        YDKImporter importer = new YDKImporter(cardsPath);
+        List<String> deck40 = importer.getCardNamesFromYDK(deckPath);
+        List<String> deck60 = padDeck(deck40, importer.getCardNamesFromYDK(extraPath), 60);
+        CompiledDeck compiled40 = CompiledDeck.compile(deck40, Map.of(), Map.of(), Map.of());
+        CompiledDeck compiled60 = CompiledDeck.compile(deck60, Map.of(), Map.of(), Map.of());
+        List<HandPattern> few = List.of(
+                new HandPattern(List.of(), Map.of("handtrap", 1, "extender", 2), 1.0),
+                new HandPattern(List.of("Ext Ryzeal", "Ice Ryzeal"), Map.of("handtrap", 3), 2.0),
+                new HandPattern(List.of("Ext Ryzeal"), Map.of("starter", 1), 1.5));
+        List<HandPattern> many = randomPatterns(deck60, 40, 1);
+
+        List<Benchmark> list = new ArrayList<>();
+
+        // Checking every pattern against one hand
+        for (List<HandPattern> patterns : List.of(few, many)) {
+            String size = patterns == few ? "few" : "many";
+            list.add(new Benchmark("match.handPattern." + size, BATCH, legacyMatch(deck40, patterns)));
+            list.add(new Benchmark("match.compiled." + size, BATCH, compiledMatch(compiled40, patterns)));
+        }
+
+        // One trial: draw, score and match, without the score cache
+        for (CompiledDeck deck : List.of(compiled40, compiled60)) {
+            for (List<HandPattern> patterns : List.of(few, many)) {
+                String name = "trial." + deck.size() + "." + (patterns == few ? "few" : "many");
+                list.add(new Benchmark(name, BATCH, trial(deck, patterns)));
+            }
+        }
+
+        // Drawing a hand
+        list.add(new Benchmark("sample.shuffle", BATCH, shuffle(deck40)));
+        list.add(new Benchmark("sample.plain", BATCH, plain(compiled40)));
+        list.add(new Benchmark("sample.antithetic", BATCH, antithetic(compiled40)));
+        list.add(new Benchmark("sample.stratified", BATCH, stratified(compiled40)));
+
+        list.add(new Benchmark("roles.effectiveInfo", deck40.size(), effectiveInfo(deck40)));
+
+        // Whole runs through the engine on every core. "cold" compiles the deck each time, so
+        // its score cache starts empty; "warm" reuses one deck.
+        for (CompiledDeck deck : List.of(compiled40, compiled60)) {
+            List<String> names = deck == compiled40 ? deck40 : deck60;
+            list.add(new Benchmark("run.1M." + deck.size() + ".many.cold", 1, () -> {
+                CompiledDeck fresh = CompiledDeck.compile(names, Map.of(), Map.of(), Map.of());
+                return Double.doubleToLongBits(SimulationEngine.run(fresh, 1_000_000, false, many, 42,
+                        SimulationEngine.defaultThreads()).avg);
+            }));
+            list.add(new Benchmark("run.1M." + deck.size() + ".many.warm", 1,
+                    () -> Double.doubleToLongBits(SimulationEngine.run(deck, 1_000_000, false, many, 42,
+                            SimulationEngine.defaultThreads()).avg)));
+        }
+
+        // Loading the card database and a deck list
+        list.add(new Benchmark("load.cardDatabase", 1, () -> {
+            try {
+                return new YDKImporter(cardsPath).getCardNamesFromYDK(deckPath).size();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }));
+        list.add(new Benchmark("load.compileDeck", 1,
+                () -> CompiledDeck.compile(deck60, Map.of(), Map.of(), Map.of()).cardCount()));
+        return list;
+    }
+
+    static Op legacyMatch(List<String> deck, List<HandPattern> patterns) {
+        List<List<String>> hands = new ArrayList<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 1024; i++) {
+            List<String> shuffled = new ArrayList<>(deck);
+            Collections.shuffle(shuffled, random);
+            hands.add(new ArrayList<>(shuffled.subList(0, 5)));
+        }
+        int[] next = { 0 };
+        return () -> {
+            long matches = 0;
+            for (int i = 0; i < BATCH; i++) {
+                List<String> hand = hands.get(next[0]++ & 1023);
+                for (HandPattern pattern : patterns) {
+                    if (pattern.matches(hand))
+                        matches++;
+                }
+            }
+            return matches;
+        };
+    }
+
+    static Op compiledMatch(CompiledDeck deck, List<HandPattern> patterns) {
+        CompiledPatterns compiled = new CompiledPatterns(deck, patterns);
+        int[][] hands = new int[1024][5];
+        HandSampler sampler = new HandSampler(deck.cards, 5);
+        SplittableRandom random = new SplittableRandom(7);
+        for (int[] hand : hands)
+            sampler.draw(random, 5, hand);
+        int[] scratch = compiled.newScratch();
+        boolean[] matched = new boolean[patterns.size()];
+        int[] next = { 0 };
+        return () -> {
+            long matches = 0;
+            for (int i = 0; i < BATCH; i++) {
+                compiled.match(hands[next[0]++ & 1023], 5, scratch, matched);
+                for (boolean m : matched) {
+                    if (m)
+                        matches++;
+                }
+            }
+            return matches;
+        };
+    }
+
+    static Op trial(CompiledDeck deck, List<HandPattern> patterns) {
+        CompiledPatterns compiled = new CompiledPatterns(deck, patterns);
+        HandSampler sampler = new HandSampler(deck.cards, 5);
+        SplittableRandom random = new SplittableRandom(7);
+        int[] hand = new int[5];
+        int[] scratch = compiled.newScratch();
+        boolean[] matched = new boolean[patterns.size()];
+        return () -> {
+            double total = 0;
+            for (int i = 0; i < BATCH; i++) {
+                sampler.draw(random, 5, hand);
+                total += SimulationEngine.evaluateHand(deck, hand, 5, false, compiled, scratch, matched);
+            }
+            return Double.doubleToLongBits(total);
+        };
+    }
+
+    // The draw the first engine used: shuffle a copy of the whole list, take the top five
+    static Op shuffle(List<String> deck) {
+        Random random = new Random(7);
+        return () -> {
+            long hash = 0;
+            for (int i = 0; i < BATCH; i++) {
+                List<String> shuffled = new ArrayList<>(deck);
+                Collections.shuffle(shuffled, random);
+                hash += shuffled.subList(0, 5).hashCode();
+            }
+            return hash;
+        };
+    }
+
+    static Op plain(CompiledDeck deck) {
+        HandSampler sampler = new HandSampler(deck.cards, 5);
+        SplittableRandom random = new SplittableRandom(7);
+        int[] hand = new int[5];
+        return () -> {
+            long sum = 0;
+            for (int i = 0; i < BATCH; i++) {
+                sampler.draw(random, 5, hand);
+                sum += hand[0] + hand[4];
+            }
+            return sum;
+        };
+    }
+
+    static Op antithetic(CompiledDeck deck) {
+        HandSampler sampler = new HandSampler(deck.cardsByWeight(false), 5);
+        SplittableRandom random = new SplittableRandom(7);
+        int[] hand = new int[5], mirror = new int[5];
+        return () -> {
+            long sum = 0;
+            for (int i = 0; i < BATCH; i += 2) {
+                sampler.drawAntithetic(random, 5, hand, mirror);
+                sum += hand[0] + mirror[0];
+            }
+            return sum;
+        };
+    }
+
+    static Op stratified(CompiledDeck deck) {
+        StratifiedSampler sampler = new StratifiedSampler(deck.cards, deck.hasRole(deck.trackedRoleIds()[0]), 5);
+        SplittableRandom random = new SplittableRandom(7);
+        int[] hand = new int[5];
+        return () -> {
+            sampler.startBlock(random, BATCH);
+            long sum = 0;
+            for (int i = 0; i < BATCH; i++) {
+                sampler.draw(random, hand);
+                sum += hand[0] + hand[4];
+            }
+            return sum;
+        };
+    }
+
+    static Op effectiveInfo(List<String> deck) {
+        Map<String, CardRoles.CardInfo> overrides = new HashMap<>();
+        overrides.put(deck.get(0), new CardRoles.CardInfo("extender", false));
+        return () -> {
+            long opt = 0;
+            for (String name : deck) {
+                if (CardRoles.getEffectiveInfo(name, overrides).isOPT)
+                    opt++;
+            }
+            return opt;
+        };
+    }
+
+    // The deck topped up to `size` cards from `extra`, at most three copies of a card
+    static List<String> padDeck(List<String> deck, List<String> extra, int size) {
+        List<String> padded = new ArrayList<>(deck);
+        Map<String, Integer> copies = new LinkedHashMap<>();
+        for (String name : deck)
+            copies.merge(name, 1, Integer::sum);
+        for (int pass = 0; pass < 3 && padded.size() < size; pass++) {
+            for (String name : extra) {
+                if (padded.size() < size && copies.getOrDefault(name, 0) < 3) {
+                    copies.merge(name, 1, Integer::sum);
+                    padded.add(name);
+                }
+            }
+        }
+        if (padded.size() < size)
+            throw new IllegalArgumentException("Not enough distinct cards for a " + size + "-card deck");
+        return padded;
+    }
+
+    static List<HandPattern> randomPatterns(List<String> deck, int count, long seed) {
+        Random random = new Random(seed);
+        List<String> roles = List.of("starter", "extender", "handtrap", "soft garnet", "unknown");
+        List<HandPattern> patterns = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            List<String> names = new ArrayList<>();
+            for (int c = random.nextInt(3); c > 0; c--)
+                names.add(deck.get(random.nextInt(deck.size())));
+            Map<String, Integer> roleCounts = new HashMap<>();
+            for (int r = random.nextInt(3); r > 0; r--)
+                roleCounts.put(roles.get(random.nextInt(roles.size())), 1 + random.nextInt(2));
+            patterns.add(new HandPattern(names, roleCounts, random.nextDouble() * 2 - 0.5));
+        }
+        return patterns;
+    }
+
+    static void measure(Benchmark benchmark, int warmup, int iterations, double seconds) {
+        for (int i = 0; i < warmup; i++)
+            iteration(benchmark, seconds);
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long gcCount = -gcCount(), gcMillis = -gcMillis();
+        long allocated = -threads.getThreadAllocatedBytes(thread);
+        long ops = 0;
+        double[] scores = new double[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long[] result = iteration(benchmark, seconds);
+            scores[i] = (double) result[0] / result[1];
+            ops += result[1];
+        }
+        allocated += threads.getThreadAllocatedBytes(thread);
+        gcCount += gcCount();
+        gcMillis += gcMillis();
+
+        double mean = 0;
+        for (double s : scores)
+            mean += s;
+        mean /= iterations;
+        double var = 0;
+        for (double s : scores)
+            var += (s - mean) * (s - mean);
+        double error = iterations > 1
+                ? t999(iterations - 1) * Math.sqrt(var / (iterations - 1) / iterations) : Double.NaN;
+
+        String units = "ns/op";
+        if (mean > 1e6) {
+            mean /= 1e6;
+            error /= 1e6;
+            units = "ms/op";
+        }
+        System.out.printf("%-36s %5d %12.3f %10.3f  %-6s %12.1f %8d %8d%n",
+                benchmark.name, iterations, mean, error, units, (double) allocated / ops, gcCount, gcMillis);
+    }
+
+    // {nanoseconds, operations} for one iteration of at least `seconds`
+    static long[] iteration(Benchmark benchmark, double seconds) {
+        long limit = (long) (seconds * 1e9);
+        long start = System.nanoTime(), elapsed;
+        long calls = 0, acc = 0;
+        do {
+            acc += benchmark.op.run();
+            calls++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < limit);
+        sink += acc;
+        return new long[] { elapsed, calls * benchmark.opsPerCall };
+    }
+
+    static double t999(int degreesOfFreedom) {
+        return degreesOfFreedom <= T999.length ? T999[degreesOfFreedom - 1] : 3.291;
+    }
+
+    static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            count += Math.max(0, gc.getCollectionCount());
+        return count;
+    }
+
+    static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            millis += Math.max(0, gc.getCollectionTime());
+        return millis;
+    }
+}